@@ -0,0 +1,75 @@
+package com.notonthehighstreet.ratel.benchmarks;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.HoneybadgerConfiguration;
+
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Configuration pointing the library at a stand-in endpoint for the benchmarks.
+ */
+final class BenchmarkConfiguration implements HoneybadgerConfiguration {
+
+    private final URL url;
+
+    BenchmarkConfiguration(final URL url) {
+        this.url = url;
+    }
+
+    @Override
+    public String getKey() {
+        return "key";
+    }
+
+    @Override
+    public URL getUrl() {
+        return url;
+    }
+
+    @Override
+    public String getName() {
+        return "benchmark";
+    }
+
+    @Override
+    public String getVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public String getEnvironment() {
+        return "benchmark";
+    }
+
+    @Override
+    public Collection<String> getExcludeExceptions() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,120 @@
+package com.notonthehighstreet.ratel.benchmarks;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notonthehighstreet.ratel.Honeybadger;
+import com.notonthehighstreet.ratel.HoneybadgerOptions;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from notifying to the notice being received by a stand-in Honeybadger endpoint running in the same process, covering queueing, building the
+ * notice, serialization, compression and the HTTP request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndDeliveryBenchmark {
+
+    @Param({"10", "100"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean compression;
+
+    private final Semaphore received = new Semaphore(0);
+    private HttpServer server;
+    private ExecutorService executor;
+    private Honeybadger honeybadger;
+    private Throwable exception;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                final InputStream body = exchange.getRequestBody();
+                final byte[] buffer = new byte[8192];
+                while (body.read(buffer) != -1) {
+                    // Read the whole notice, as Honeybadger would
+                }
+                exchange.sendResponseHeaders(201, -1);
+                exchange.close();
+                received.release();
+            }
+        });
+        server.start();
+
+        final HoneybadgerOptions options = new HoneybadgerOptions();
+        options.setCompressionEnabled(compression);
+
+        executor = Executors.newSingleThreadExecutor();
+        final URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/v1/notices");
+        honeybadger = new Honeybadger(new BenchmarkConfiguration(url), executor, new ObjectMapper(), "java", options);
+        exception = Exceptions.withDepth(depth);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        server.stop(0);
+    }
+
+    @Benchmark
+    public void notifyAndDeliver() throws InterruptedException {
+        honeybadger.notify("http://localhost/benchmark", null, null, "GET", "agent", "127.0.0.1", Collections.<String, String[]>emptyMap(), exception);
+        received.acquire();
+    }
+}
@@ -0,0 +1,68 @@
+package com.notonthehighstreet.ratel.benchmarks;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * Builds exceptions with stack traces of a known depth for the benchmarks.
+ */
+final class Exceptions {
+
+    private Exceptions() {
+    }
+
+    static Throwable withDepth(final int depth) {
+        return recurse(depth, 0);
+    }
+
+    /**
+     * Exception at the end of a cause chain, as left by layers of code each catching and wrapping what they were given.
+     * @param depth Depth of the stack trace of each exception in the chain.
+     * @param chainLength Number of exceptions in the chain.
+     * @return Outermost exception of the chain.
+     */
+    static Throwable wrapped(final int depth, final int chainLength) {
+        Throwable t = withDepth(depth);
+        for (int i = 1; i < chainLength; i++) {
+            t = wrap(depth, 0, i, t);
+        }
+        return t;
+    }
+
+    private static Throwable wrap(final int depth, final int current, final int level, final Throwable cause) {
+        if (current >= depth) {
+            return new RuntimeException("benchmark wrapper " + level, cause);
+        }
+        return wrap(depth, current + 1, level, cause);
+    }
+
+    private static Throwable recurse(final int depth, final int current) {
+        if (current >= depth) {
+            return new IllegalStateException("benchmark exception at depth " + depth);
+        }
+        return recurse(depth, current + 1);
+    }
+}
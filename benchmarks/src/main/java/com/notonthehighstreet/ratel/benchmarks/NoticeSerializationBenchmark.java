@@ -0,0 +1,121 @@
+package com.notonthehighstreet.ratel.benchmarks;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notonthehighstreet.ratel.HoneybadgerOptions;
+import com.notonthehighstreet.ratel.internal.delivery.Notice;
+import com.notonthehighstreet.ratel.internal.json.FrameCache;
+import com.notonthehighstreet.ratel.internal.json.NoticeSerializer;
+import com.notonthehighstreet.ratel.internal.model.BacktraceLimits;
+import com.notonthehighstreet.ratel.internal.model.Error;
+import com.notonthehighstreet.ratel.internal.model.Notifier;
+import com.notonthehighstreet.ratel.internal.model.Request;
+import com.notonthehighstreet.ratel.internal.model.Server;
+import com.notonthehighstreet.ratel.internal.model.ServerMetadata;
+import com.notonthehighstreet.ratel.internal.utility.GzipEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares turning a notice into JSON through Jackson data binding of the model classes with the streaming {@linkplain NoticeSerializer}, and measures compressing
+ * the result. The size of the notice before and after compression is printed during setup. Run with {@code -prof gc} to compare the bytes allocated per notice.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoticeSerializationBenchmark {
+
+    @Param({"10", "100"})
+    public int depth;
+
+    private ObjectMapper mapper;
+    private NoticeSerializer serializer;
+    private Notifier notifier;
+    private Notice notice;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = new ObjectMapper();
+        serializer = new NoticeSerializer(mapper.getFactory(), new FrameCache(new HoneybadgerOptions().getFrameCacheSize()), BacktraceLimits.DEFAULT);
+        notifier = new Notifier("key", "benchmark", "1.3.0", "java");
+
+        final Map<String, String> params = new HashMap<String, String>();
+        for (int i = 0; i < 10; i++) {
+            params.put("param" + i, "value" + i);
+        }
+
+        final Request request = new Request();
+        request.setUrl("http://localhost/benchmark");
+        request.setParams(params);
+        request.setSession(new HashMap<String, String>());
+        request.setContext(new HashMap<String, String>());
+        request.setCgiData(new HashMap<String, String>());
+
+        notice = new Notice(Exceptions.withDepth(depth), Server.toServer("benchmark", ServerMetadata.resolve()), request);
+
+        final byte[] body = serializer.serialize(notice, notifier);
+        System.out.println("Notice with " + depth + " frames is " + body.length + " bytes, " + GzipEncoder.forCurrentThread().encode(body) + " bytes compressed");
+    }
+
+    @Benchmark
+    public byte[] dataBinding() throws IOException {
+        final Map<String, Object> body = new HashMap<String, Object>();
+        body.put("notifier", notifier);
+        body.put("error", Error.fromException(notice.getThrowable()));
+        body.put("server", notice.getServer());
+        body.put("request", notice.getRequest());
+        return mapper.writeValueAsBytes(body);
+    }
+
+    @Benchmark
+    public byte[] streaming() throws IOException {
+        return serializer.serialize(notice, notifier);
+    }
+
+    @Benchmark
+    public int streamingCompressed() throws IOException {
+        return GzipEncoder.forCurrentThread().encode(serializer.serialize(notice, notifier));
+    }
+}
@@ -0,0 +1,160 @@
+package com.notonthehighstreet.ratel.benchmarks;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.OverflowPolicy;
+import com.notonthehighstreet.ratel.internal.delivery.BoundedNoticeQueue;
+import com.notonthehighstreet.ratel.internal.delivery.DeliveryEngine;
+import com.notonthehighstreet.ratel.internal.delivery.Notice;
+import com.notonthehighstreet.ratel.internal.delivery.NoticeQueue;
+import com.notonthehighstreet.ratel.internal.delivery.RingBufferNoticeQueue;
+import com.notonthehighstreet.ratel.internal.metrics.DeliveryMetrics;
+import com.notonthehighstreet.ratel.internal.model.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares handing notices to a single delivery thread from 1, 8 and 64 producer threads: a task per notice on an executor backed by a
+ * {@linkplain LinkedBlockingQueue}, the {@linkplain DeliveryEngine} over the locked {@linkplain BoundedNoticeQueue}, and over the lock-free
+ * {@linkplain RingBufferNoticeQueue}. Each queue holds the same number of notices. Rather than running for a fixed time, which lets the producers fill the queue
+ * and then measure dropping notices, each producer submits a fixed batch into a fresh queue with room for every producer's batch, and the score is how long its
+ * batch took. An iteration that drops any notices fails.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = NoticeSubmissionBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = NoticeSubmissionBenchmark.BATCH)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoticeSubmissionBenchmark {
+
+    private static final int MAX_PRODUCERS = 64;
+    static final int BATCH = 1 << 16;
+    private static final int CAPACITY = MAX_PRODUCERS * BATCH;
+
+    @Param({"executor", "locked", "lockFree"})
+    public String path;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private ExecutorService executor;
+    private NoticeQueue queue;
+    private DeliveryEngine engine;
+    private Notice notice;
+
+    @Setup
+    public void setUp() {
+        notice = new Notice(new IllegalStateException(), null, new Request());
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        rejected.set(0);
+        if ("executor".equals(path)) {
+            executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(CAPACITY), new RejectedExecutionHandler() {
+                @Override
+                public void rejectedExecution(final Runnable task, final ThreadPoolExecutor executor) {
+                    rejected.incrementAndGet();
+                }
+            });
+            return;
+        }
+
+        executor = Executors.newSingleThreadExecutor();
+        queue = "locked".equals(path)
+                ? new BoundedNoticeQueue(CAPACITY, Long.MAX_VALUE, OverflowPolicy.DROP_NEWEST, 0, TimeUnit.MILLISECONDS)
+                : new RingBufferNoticeQueue(CAPACITY, Long.MAX_VALUE);
+        engine = new DeliveryEngine(queue, executor, new DeliveryEngine.Handler() {
+            @Override
+            public void deliver(final Notice notice) {
+                delivered.incrementAndGet();
+            }
+        }, 1, new DeliveryMetrics());
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        executor.shutdownNow();
+        final long dropped = engine != null ? queue.getDropped() : rejected.get();
+        engine = null;
+        queue = null;
+        if (dropped > 0) {
+            throw new IllegalStateException("Dropped " + dropped + " notices, so the iteration measured dropping rather than submitting");
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean producers1() {
+        return submit();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean producers8() {
+        return submit();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean producers64() {
+        return submit();
+    }
+
+    private boolean submit() {
+        if (engine != null) {
+            return engine.submit(notice);
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                delivered.incrementAndGet();
+            }
+        });
+        return true;
+    }
+}
@@ -0,0 +1,157 @@
+package com.notonthehighstreet.ratel.benchmarks;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notonthehighstreet.ratel.FallbackSink;
+import com.notonthehighstreet.ratel.Honeybadger;
+import com.notonthehighstreet.ratel.HoneybadgerOptions;
+import com.notonthehighstreet.ratel.transport.Transport;
+import com.notonthehighstreet.ratel.transport.TransportCallback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what notifying costs the thread that calls {@linkplain Honeybadger#notify}, with shallow and deep stack traces and with notices built on the calling
+ * or the delivery thread. Run with {@code -prof gc} to see the bytes allocated on the calling thread per notification.
+ * <p>
+ * Delivering a notice costs far more than submitting one, so no delivery thread could keep the queue from filling, and a full queue makes notify take the much
+ * cheaper path of dropping the notice. Instead delivery is held back while each short iteration runs, against a fresh queue large enough to hold everything
+ * submitted, and the queued notices are thrown away afterwards. An iteration that drops anything fails the run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 100, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 100, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NotifyBenchmark {
+
+    private static final int QUEUE_CAPACITY = 2000000;
+
+    @Param({"10", "100"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean deferred;
+
+    private Honeybadger honeybadger;
+    private Throwable exception;
+    private Map<String, String[]> parameters;
+    private String[] values;
+
+    @Setup
+    public void setUp() {
+        exception = Exceptions.withDepth(depth);
+
+        parameters = new HashMap<String, String[]>();
+        values = new String[]{"value"};
+        for (int i = 0; i < 10; i++) {
+            parameters.put("param" + i, values);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() throws MalformedURLException {
+        final HoneybadgerOptions options = new HoneybadgerOptions();
+        options.setTransport(new Transport() {
+            @Override
+            public void send(final URL url, final Map<String, String> headers, final byte[] body, final TransportCallback callback) {
+                callback.completed(201, null);
+            }
+        });
+        options.setDeferredConstruction(deferred);
+        options.setQueueCapacity(QUEUE_CAPACITY);
+        options.setQueueMaxBytes(Long.MAX_VALUE);
+        options.setFallbackSink(new FallbackSink() {
+            @Override
+            public void abandoned(final byte[] notice) {
+            }
+        });
+
+        // Drains are never run, so everything submitted stays queued until the iteration is over
+        honeybadger = new Honeybadger(new BenchmarkConfiguration(new URL("http://localhost/v1/notices")), new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+            }
+        }, new ObjectMapper(), "java", options);
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        final long dropped = honeybadger.getDroppedNoticeCount();
+        honeybadger.close(0, TimeUnit.SECONDS);
+        if (dropped > 0) {
+            throw new IllegalStateException("Dropped " + dropped + " notices, so the iteration measured dropping rather than submitting");
+        }
+    }
+
+    @Benchmark
+    public void notifyWithMaps() {
+        honeybadger.notify("http://localhost/benchmark", "controller", "action", "GET", "agent", "127.0.0.1", parameters, exception);
+    }
+
+    @Benchmark
+    public void notifyWithBuilder() {
+        honeybadger.notice()
+                .url("http://localhost/benchmark")
+                .controller("controller")
+                .action("action")
+                .method("GET")
+                .userAgent("agent")
+                .remoteAddress("127.0.0.1")
+                .parameter("param0", values)
+                .parameter("param1", values)
+                .parameter("param2", values)
+                .parameter("param3", values)
+                .parameter("param4", values)
+                .parameter("param5", values)
+                .parameter("param6", values)
+                .parameter("param7", values)
+                .parameter("param8", values)
+                .parameter("param9", values)
+                .send(exception);
+    }
+}
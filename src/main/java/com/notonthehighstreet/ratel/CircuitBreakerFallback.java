@@ -0,0 +1,48 @@
+package com.notonthehighstreet.ratel;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * What should happen to a notice that is not sent because the circuit breaker around Honeybadger is open.
+ */
+public enum CircuitBreakerFallback {
+
+    /**
+     * Discard the notice, logging it at FINE level. The breaker itself logs a single warning each time it opens.
+     */
+    DROP,
+
+    /**
+     * Discard the notice without logging; it is only counted by {@linkplain Honeybadger#getCircuitBreakerRejectedCount()}.
+     */
+    COUNT,
+
+    /**
+     * Write the notice to the spool so it is sent once Honeybadger recovers. Behaves like {@linkplain #DROP} if no spool directory has been set.
+     */
+    SPOOL
+}
@@ -0,0 +1,92 @@
+package com.notonthehighstreet.ratel;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.delivery.DeliveryTracker;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of submitting a notice, completing with its {@linkplain DeliveryOutcome} once it has been sent or given up on. Retries and the delivery queue mean this can
+ * take a while; {@linkplain Honeybadger#flush} or {@linkplain Honeybadger#close} hurry it along. A future cannot be cancelled.
+ */
+public final class DeliveryFuture implements Future<DeliveryOutcome> {
+
+    private final DeliveryTracker tracker;
+
+    DeliveryFuture(final DeliveryTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    /**
+     * Be told the outcome once the notice completes.
+     * @param listener Listener to call, straight away if the notice has already completed.
+     * @return This future.
+     */
+    public DeliveryFuture addListener(final DeliveryListener listener) {
+        tracker.addListener(listener);
+        return this;
+    }
+
+    /**
+     * @return HTTP status code of the last response from Honeybadger, or -1 if there was none or the notice has not completed.
+     */
+    public int getStatusCode() {
+        return tracker.getStatusCode();
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return tracker.isDone();
+    }
+
+    @Override
+    public DeliveryOutcome get() throws InterruptedException {
+        return tracker.await();
+    }
+
+    @Override
+    public DeliveryOutcome get(final long timeout, final TimeUnit unit) throws InterruptedException, TimeoutException {
+        final DeliveryOutcome outcome = tracker.await(timeout, unit);
+        if (outcome == null) {
+            throw new TimeoutException("Honeybadger notice had not completed within " + timeout + " " + unit);
+        }
+        return outcome;
+    }
+}
@@ -0,0 +1,81 @@
+package com.notonthehighstreet.ratel;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * What finally happened to a notice submitted with {@linkplain Honeybadger#submit} or {@linkplain NoticeBuilder#submit}.
+ */
+public enum DeliveryOutcome {
+    /**
+     * Honeybadger accepted the notice.
+     */
+    DELIVERED,
+    /**
+     * Honeybadger refused the notice with a response that is not worth trying again, such as a bad API key.
+     */
+    REJECTED,
+    /**
+     * The notice could not be sent, either because the attempts ran out or because it could not be serialized.
+     */
+    FAILED,
+    /**
+     * The attempts ran out and the notice was written to the spool to be replayed later.
+     */
+    SPOOLED,
+    /**
+     * The notice was not sent because Honeybadger had been failing and the circuit breaker was open.
+     */
+    CIRCUIT_OPEN,
+    /**
+     * The notice was thrown away because the delivery queue was full.
+     */
+    DROPPED,
+    /**
+     * The exception is configured to be excluded.
+     */
+    EXCLUDED,
+    /**
+     * The notice was not sent because of the sample rate for its exception.
+     */
+    SAMPLED_OUT,
+    /**
+     * The notice exceeded the rate limits.
+     */
+    RATE_LIMITED,
+    /**
+     * The notice repeated a recent exception and was folded into a follow-up notice.
+     */
+    FOLDED,
+    /**
+     * Honeybadger was closed before the notice could be sent, and the notice was handed to the {@linkplain FallbackSink}.
+     */
+    ABANDONED,
+    /**
+     * Honeybadger had already been closed when the notice was submitted.
+     */
+    CLOSED
+}
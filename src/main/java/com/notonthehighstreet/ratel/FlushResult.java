@@ -0,0 +1,82 @@
+package com.notonthehighstreet.ratel;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * What happened to the notices waiting to be sent during a call to {@linkplain Honeybadger#flush} or {@linkplain Honeybadger#close}.
+ */
+public final class FlushResult {
+
+    private final long delivered;
+    private final long failed;
+    private final int abandoned;
+    private final int pending;
+
+    FlushResult(final long delivered, final long failed, final int abandoned, final int pending) {
+        this.delivered = delivered;
+        this.failed = failed;
+        this.abandoned = abandoned;
+        this.pending = pending;
+    }
+
+    /**
+     * Notices Honeybadger accepted before the deadline.
+     * @return Number of delivered notices.
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Notices that were sent before the deadline but were refused, or could not reach Honeybadger.
+     * @return Number of failed notices.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Notices that had not been sent by the deadline and were handed to the {@linkplain FallbackSink} instead. Always zero for a flush, which leaves them queued.
+     * @return Number of abandoned notices.
+     */
+    public int getAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * Notices still queued, being sent or waiting to be retried when the deadline passed.
+     * @return Number of notices not yet dealt with.
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    @Override
+    public String toString() {
+        return "delivered=" + delivered + ", failed=" + failed + ", abandoned=" + abandoned + ", pending=" + pending;
+    }
+}
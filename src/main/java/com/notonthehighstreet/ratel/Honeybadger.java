@@ -26,48 +26,110 @@ package com.notonthehighstreet.ratel;
  * #L%
  */
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.notonthehighstreet.ratel.internal.model.Error;
-import com.notonthehighstreet.ratel.internal.model.Notifier;
+import com.notonthehighstreet.ratel.internal.delivery.Backoff;
+import com.notonthehighstreet.ratel.internal.delivery.BoundedNoticeQueue;
+import com.notonthehighstreet.ratel.internal.delivery.CircuitBreaker;
+import com.notonthehighstreet.ratel.internal.delivery.CircuitBreakerTransport;
+import com.notonthehighstreet.ratel.internal.delivery.DeliveryEngine;
+import com.notonthehighstreet.ratel.internal.delivery.DeliveryTracker;
+import com.notonthehighstreet.ratel.internal.delivery.Dispatcher;
+import com.notonthehighstreet.ratel.internal.delivery.Notice;
+import com.notonthehighstreet.ratel.internal.delivery.NoticeQueue;
+import com.notonthehighstreet.ratel.internal.delivery.NoticeSpool;
+import com.notonthehighstreet.ratel.internal.delivery.RequestSnapshot;
+import com.notonthehighstreet.ratel.internal.delivery.RingBufferNoticeQueue;
+import com.notonthehighstreet.ratel.internal.delivery.SpoolReplayer;
+import com.notonthehighstreet.ratel.internal.filter.Deduplicator;
+import com.notonthehighstreet.ratel.internal.filter.RateLimiter;
+import com.notonthehighstreet.ratel.internal.filter.Sampler;
+import com.notonthehighstreet.ratel.internal.json.FrameCache;
+import com.notonthehighstreet.ratel.internal.json.NoticeSerializer;
+import com.notonthehighstreet.ratel.internal.metrics.DeliveryMetrics;
+import com.notonthehighstreet.ratel.internal.model.BacktraceLimits;
 import com.notonthehighstreet.ratel.internal.model.Request;
 import com.notonthehighstreet.ratel.internal.model.Server;
+import com.notonthehighstreet.ratel.internal.utility.ConfigurationSnapshot;
+import com.notonthehighstreet.ratel.internal.utility.DaemonThreadFactory;
+import com.notonthehighstreet.ratel.internal.utility.GzipEncoder;
 import com.notonthehighstreet.ratel.internal.utility.HttpRequest;
+import com.notonthehighstreet.ratel.internal.utility.ServerMetadataCache;
+import com.notonthehighstreet.ratel.transport.BatchingTransport;
+import com.notonthehighstreet.ratel.transport.HttpUrlConnectionTransport;
+import com.notonthehighstreet.ratel.transport.Transport;
 
 import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.Closeable;
 import java.io.IOException;
-import java.net.HttpURLConnection;
+import java.lang.management.ManagementFactory;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static java.util.Arrays.asList;
 
 /**
- * This class provides a method of communicating exceptions to <a href="https://honeybadger.io">Honeybadger</a>.
+ * This class provides a method of communicating exceptions to <a href="https://honeybadger.io">Honeybadger</a>. Close it when the application stops, so that
+ * notices still waiting are sent rather than lost.
  */
-public class Honeybadger {
+public class Honeybadger implements Closeable {
 
     private static final Logger LOG = Logger.getLogger(Honeybadger.class.getName());
-    private static final String API_VERSION = "1.3.0";
+    private static final String SAMPLE_RATE = "sample_rate";
 
     private final HoneybadgerConfiguration configuration;
-    private final Executor executor;
-    private final Notifier notifier;
-    private final HttpRequest request;
+    private final String language;
+    private final boolean excludeSubclasses;
+    private final AtomicReference<ConfigurationSnapshot> snapshot;
+    private final Dispatcher dispatcher;
+    private final Transport transport;
+    private final NoticeSpool spool;
+    private final FallbackSink fallbackSink;
+    private final BatchingTransport batchingTransport;
+    private final boolean ownsBatchingTransport;
+    private final long shutdownTimeoutMillis;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private ObjectName mxBeanName;
+    private final NoticeSerializer serializer;
+    private final DeliveryEngine engine;
+    private final ScheduledExecutorService scheduler;
+    private final Deduplicator deduplicator;
+    private final RateLimiter rateLimiter;
+    private final Sampler sampler;
+    private final ServerMetadataCache serverMetadata;
+    private final boolean deferredConstruction;
+    private final DeliveryMetrics metrics = new DeliveryMetrics();
+    // Builders are only tied to this instance while in use, so that pooled threads don't keep a closed Honeybadger reachable
+    private final ThreadLocal<NoticeBuilder> builders = new ThreadLocal<NoticeBuilder>() {
+        @Override
+        protected NoticeBuilder initialValue() {
+            return new NoticeBuilder();
+        }
+    };
 
     /**
      * Construct a new instance with the given parameters. Will use Java as the programming language.
      * @param configuration The configuration that will be used when communicating to Honeybadger.
      * @param executor Executor where the communication with Honeybadger will take place. This is used to avoid the scenario where responding back to the user is delayed while waiting
      *                 for the request to Honeybadger to timeout.
-     * @param mapper Jackson mapper that will be used to turn objects into JSON.
+     * @param mapper Jackson mapper whose {@linkplain JsonFactory} will be used to write notices as JSON.
      */
     public Honeybadger(final HoneybadgerConfiguration configuration, final Executor executor, final ObjectMapper mapper) {
-        this(configuration, executor, new HttpRequest(mapper), "java");
+        this(configuration, executor, mapper, "java");
     }
 
     /**
@@ -75,18 +137,96 @@ public class Honeybadger {
      * @param configuration The configuration that will be used when communicating to Honeybadger.
      * @param executor Executor where the communication with Honeybadger will take place. This is used to avoid the scenario where responding back to the user is delayed while waiting
      *                 for the request to Honeybadger to timeout.
-     * @param mapper Jackson mapper that will be used to turn objects into JSON.
+     * @param mapper Jackson mapper whose {@linkplain JsonFactory} will be used to write notices as JSON.
      * @param language Programming language that the application is written in (java, scala, groovy, etc).
      */
     public Honeybadger(final HoneybadgerConfiguration configuration, final Executor executor, final ObjectMapper mapper, final String language) {
-        this(configuration, executor, new HttpRequest(mapper), language);
+        this(configuration, executor, mapper, language, new HoneybadgerOptions());
     }
 
-    Honeybadger(final HoneybadgerConfiguration configuration, final Executor executor, final HttpRequest request, final String language) {
+    /**
+     * Construct a new instance with the given parameters.
+     * @param configuration The configuration that will be used when communicating to Honeybadger.
+     * @param executor Executor where the communication with Honeybadger will take place. This is used to avoid the scenario where responding back to the user is delayed while waiting
+     *                 for the request to Honeybadger to timeout.
+     * @param mapper Jackson mapper whose {@linkplain JsonFactory} will be used to write notices as JSON.
+     * @param language Programming language that the application is written in (java, scala, groovy, etc).
+     * @param options Options controlling how notices are queued and delivered.
+     */
+    public Honeybadger(final HoneybadgerConfiguration configuration, final Executor executor, final ObjectMapper mapper, final String language,
+                       final HoneybadgerOptions options) {
+        this(configuration, executor, new HttpRequest(options.isCompressionEnabled() ? options.getCompressionThreshold() : HttpRequest.NO_COMPRESSION),
+                mapper.getFactory(), language, options);
+    }
+
+    Honeybadger(final HoneybadgerConfiguration configuration, final Executor executor, final HttpRequest request, final JsonFactory factory, final String language,
+                final HoneybadgerOptions options) {
         this.configuration = configuration;
-        this.executor = executor;
-        this.request = request;
-        this.notifier = new Notifier(configuration.getKey(), configuration.getName(), API_VERSION, language);
+        this.serializer = new NoticeSerializer(factory, new FrameCache(options.getFrameCacheSize()),
+                new BacktraceLimits(options.getMaxFramesPerCause(), options.getMaxFrames(), options.getMaxChainLength()));
+        this.language = language;
+        this.excludeSubclasses = options.isExcludeSubclasses();
+        this.snapshot = new AtomicReference<ConfigurationSnapshot>(new ConfigurationSnapshot(configuration, excludeSubclasses, language));
+        this.deferredConstruction = options.isDeferredConstruction();
+        this.rateLimiter = new RateLimiter(options.getGlobalRateLimit(), options.getPerClassRateLimit(), options.getRateLimitBurst());
+        this.sampler = new Sampler(options.getSampleRates(), options.getDefaultSampleRate());
+
+        this.engine = new DeliveryEngine(createQueue(options), executor, new DeliveryEngine.Handler() {
+            @Override
+            public void deliver(final Notice notice) {
+                if (!notice.isDeferred()) {
+                    restCall(notice);
+                    return;
+                }
+
+                final Notice complete = complete(configurationOf(notice), notice.getThrowable(), notice.getSnapshot());
+                complete.setTracker(notice.getTracker());
+                if (deduplicator.admit(complete)) {
+                    restCall(complete);
+                } else {
+                    DeliveryTracker.completeIfTracked(complete.getTracker(), DeliveryOutcome.FOLDED, -1);
+                }
+            }
+        }, options.getDeliveryConcurrency(), metrics);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("honeybadger-scheduler"));
+
+        final CircuitBreaker breaker = new CircuitBreaker(options.getCircuitBreakerFailureThreshold(), options.getCircuitBreakerOpenMillis(), TimeUnit.MILLISECONDS);
+        this.transport = createTransport(options, request, breaker);
+        this.spool = openSpool(options);
+        this.ownsBatchingTransport = transport instanceof BatchingTransport;
+        this.batchingTransport = ownsBatchingTransport ? (BatchingTransport) transport
+                : options.getTransport() instanceof BatchingTransport ? (BatchingTransport) options.getTransport() : null;
+        this.fallbackSink = options.getFallbackSink();
+        this.shutdownTimeoutMillis = options.getShutdownTimeoutMillis();
+        final Backoff backoff = new Backoff(options.getRetryBaseDelayMillis(), options.getRetryMaxDelayMillis(), new Random());
+        this.dispatcher = new Dispatcher(snapshot, transport, spool, backoff, options.getMaxDeliveryAttempts(), scheduler, executor, breaker,
+                options.getCircuitBreakerFallback(), metrics);
+        if (spool != null) {
+            final long interval = options.getSpoolReplayIntervalMillis();
+            scheduler.scheduleWithFixedDelay(new SpoolReplayer(spool, executor, dispatcher), 0, interval, TimeUnit.MILLISECONDS);
+        }
+        this.serverMetadata = new ServerMetadataCache();
+        this.serverMetadata.scheduleRefresh(scheduler, options.getMetadataRefreshIntervalMillis(), TimeUnit.MILLISECONDS);
+        final long reloadInterval = options.getConfigurationReloadIntervalMillis();
+        if (reloadInterval > 0) {
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    reload();
+                }
+            }, reloadInterval, reloadInterval, TimeUnit.MILLISECONDS);
+        }
+        this.deduplicator = new Deduplicator(options.getDeduplicationWindowMillis(), TimeUnit.MILLISECONDS, options.getQueueMaxBytes(), scheduler, new Deduplicator.Sink() {
+            @Override
+            public void submit(final Notice notice) {
+                notifyHoneybadger(notice);
+            }
+        });
+
+        if (options.isJmxEnabled()) {
+            registerMXBean();
+        }
     }
 
     /**
@@ -98,6 +238,17 @@ public class Honeybadger {
         notify(identifier, null, null, null, null, null, Collections.<String, String[]>emptyMap(), t);
     }
 
+    /**
+     * Notify Honeybadger that an exception occurred, and find out what happened to the notice. Use this when the caller needs to know the notice went out, such as
+     * before a batch job exits; {@linkplain #notify(String, Throwable)} is cheaper when it doesn't.
+     * @param identifier Identifier for this exception such as the URL for a web request or correlation ID for a message.
+     * @param t Exception that occurred.
+     * @return Future completed once the notice has been sent or given up on.
+     */
+    public DeliveryFuture submit(final String identifier, final Throwable t) {
+        return notice().url(identifier).submit(t);
+    }
+
     /**
      * Notify Honeybadger that an exception occurred.
      * @param url URL that was being called when the error occurred.
@@ -133,73 +284,420 @@ public class Honeybadger {
                        @Nullable final String remoteAddress, final Map<String, String[]> parameters, final Map<String, String> sessionDetails, final Map<String, String> cookies,
                        final Map<String, String> context, final Throwable t) {
 
-        if (ignoreException(t)) {
+        if (closed.get()) {
+            LOG.log(Level.FINE, "Honeybadger has been closed, not sending notice");
+            return;
+        }
+        metrics.getSubmitted().increment();
+        // Read once, so that everything done with this notice from here on uses the same configuration
+        final ConfigurationSnapshot current = snapshot.get();
+        if (current.getExclusionFilter().isExcluded(t)) {
+            metrics.getIgnored().increment();
+            return;
+        }
+        final double sampleRate = sampler.rateFor(t.getClass());
+        if (!sampler.admit(sampleRate) || !rateLimiter.tryAcquire(t.getClass())) {
             return;
         }
+        final Map<String, String> sampledContext = sampleRate < 1 ? withSampleRate(context, sampleRate) : context;
 
-        final Map<String, String> cgi = new HashMap<String, String>();
+        if (deferredConstruction) {
+            final Notice deferred = new Notice(t, new RequestSnapshot(url, controller, action, method, userAgent, remoteAddress, parameters, sessionDetails, cookies,
+                    sampledContext));
+            deferred.setConfiguration(current);
+            notifyHoneybadger(deferred);
+            return;
+        }
 
-        if (method != null) {
-            cgi.put("REQUEST_METHOD", method);
+        final Notice notice = constructNotice(current, t, url, controller, action, method, userAgent, remoteAddress, parameters, sessionDetails, cookies, sampledContext);
+        if (deduplicator.admit(notice)) {
+            notifyHoneybadger(notice);
         }
-        if (userAgent != null) {
-            cgi.put("HTTP_USER_AGENT", userAgent);
+    }
+
+    /**
+     * Start describing an exception to notify Honeybadger about, one field at a time. The builder belongs to the calling thread and is emptied each time it is
+     * handed out, so one that was never sent, say because filling it in threw, is simply started again.
+     * @return Empty builder for the calling thread.
+     */
+    public NoticeBuilder notice() {
+        final NoticeBuilder builder = builders.get();
+        builder.acquire(this);
+        return builder;
+    }
+
+    void notify(final RequestSnapshot.Builder request, final Throwable t, @Nullable final DeliveryTracker tracker) {
+        if (closed.get()) {
+            LOG.log(Level.FINE, "Honeybadger has been closed, not sending notice");
+            DeliveryTracker.completeIfTracked(tracker, DeliveryOutcome.CLOSED, -1);
+            return;
         }
-        if (remoteAddress != null) {
-            cgi.put("REMOTE_ADDR", remoteAddress);
+        metrics.getSubmitted().increment();
+        final ConfigurationSnapshot current = snapshot.get();
+        if (current.getExclusionFilter().isExcluded(t)) {
+            metrics.getIgnored().increment();
+            DeliveryTracker.completeIfTracked(tracker, DeliveryOutcome.EXCLUDED, -1);
+            return;
         }
-        final String version = configuration.getVersion();
-        if (version != null) {
-            cgi.put("SERVER_SOFTWARE", configuration.getName() + "/" + version);
+        final double sampleRate = sampler.rateFor(t.getClass());
+        if (!sampler.admit(sampleRate)) {
+            DeliveryTracker.completeIfTracked(tracker, DeliveryOutcome.SAMPLED_OUT, -1);
+            return;
+        }
+        if (!rateLimiter.tryAcquire(t.getClass())) {
+            DeliveryTracker.completeIfTracked(tracker, DeliveryOutcome.RATE_LIMITED, -1);
+            return;
         }
-        if (!cookies.isEmpty()) {
-            cgi.put("HTTP_COOKIE", toString(cookies));
+        if (sampleRate < 1) {
+            request.addContext(SAMPLE_RATE, Double.toString(sampleRate));
         }
 
-        notifyHoneybadger(constructNotice(t, constructRequest(url, controller, action, parameters, sessionDetails, context, cgi)));
+        final RequestSnapshot snapshot = request.build();
+        final Notice notice = deferredConstruction ? new Notice(t, snapshot) : complete(current, t, snapshot);
+        notice.setConfiguration(current);
+        notice.setTracker(tracker);
+        if (deferredConstruction || deduplicator.admit(notice)) {
+            notifyHoneybadger(notice);
+        } else {
+            DeliveryTracker.completeIfTracked(tracker, DeliveryOutcome.FOLDED, -1);
+        }
     }
 
-    private void notifyHoneybadger(final Map<String, ?> notice) {
-        // Notify about an error off of the main thread to avoid delaying the response in case of timing out to external service
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                restCall(notice);
+    /**
+     * Read the {@linkplain HoneybadgerConfiguration} again, so that notices from now on use any changes made to it. Until this is called, or the reload interval
+     * set on {@linkplain HoneybadgerOptions} passes, notices use the values read when this instance was constructed. If reading the configuration fails, the
+     * values already in use are kept.
+     */
+    public void reload() {
+        try {
+            snapshot.set(new ConfigurationSnapshot(configuration, excludeSubclasses, language));
+        } catch (final RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not reload Honeybadger configuration, continuing with the previous configuration", e);
+        }
+    }
+
+    /**
+     * Send the notices waiting in the queue, on the calling thread as well as the executor, and wait for them to complete. Notices can still be submitted while
+     * flushing. Notices waiting to be retried are not waited for.
+     * @param timeout Longest time to wait.
+     * @param unit Unit of the timeout.
+     * @return What happened to the notices before the timeout.
+     */
+    public FlushResult flush(final long timeout, final TimeUnit unit) {
+        return flush(System.nanoTime() + unit.toNanos(timeout), false, Collections.<byte[]>emptyList());
+    }
+
+    /**
+     * Stop accepting notices and send the ones already waiting, giving up after the shutdown timeout set on {@linkplain HoneybadgerOptions}.
+     */
+    @Override
+    public void close() {
+        final FlushResult result = close(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+        LOG.log(result.getAbandoned() > 0 || result.getPending() > 0 ? Level.WARNING : Level.FINE, "Closed Honeybadger: " + result);
+    }
+
+    /**
+     * Stop accepting notices and send the ones already waiting. Notices that have not been sent when the timeout passes, including those waiting to be retried,
+     * are handed to the {@linkplain FallbackSink}. Background tasks are stopped. Only the first call has any effect.
+     * @param timeout Longest time to spend sending notices.
+     * @param unit Unit of the timeout.
+     * @return What happened to the notices that were waiting.
+     */
+    public FlushResult close(final long timeout, final TimeUnit unit) {
+        if (!closed.compareAndSet(false, true)) {
+            return new FlushResult(0, 0, 0, 0);
+        }
+        // Anything failing from here on is given up on rather than scheduled to be tried again
+        final List<byte[]> waiting = dispatcher.close();
+
+        // Repeats folded into windows that are still open would otherwise be lost when the scheduler stops
+        int unqueued = 0;
+        for (final Notice followUp : deduplicator.closeAll()) {
+            if (engine.submit(followUp)) {
+                metrics.getQueued().increment();
+            } else {
+                abandon(followUp);
+                unqueued++;
             }
-        });
+        }
+
+        final FlushResult flushed = flush(System.nanoTime() + unit.toNanos(timeout), true, waiting);
+        final FlushResult result = unqueued == 0 ? flushed
+                : new FlushResult(flushed.getDelivered(), flushed.getFailed(), flushed.getAbandoned() + unqueued, flushed.getPending());
+
+        builders.remove();
+        scheduler.shutdownNow();
+        if (ownsBatchingTransport) {
+            batchingTransport.close();
+        }
+        if (spool != null) {
+            spool.close();
+        }
+        GzipEncoder.releaseAll();
+        if (mxBeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mxBeanName);
+            } catch (final JMException e) {
+                LOG.log(Level.FINE, "Could not unregister Honeybadger metrics from JMX", e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Snapshot of what has happened to notices since this instance was constructed.
+     * @return Current metrics.
+     */
+    public HoneybadgerMetrics getMetrics() {
+        return new HoneybadgerMetrics(metrics.getSubmitted().sum(), metrics.getIgnored().sum(), sampler.getSampledOut(), rateLimiter.getLimited(),
+                deduplicator.getFolded(), metrics.getQueued().sum(), engine.getQueue().getDropped(), metrics.getSent().sum(), metrics.getFailed().sum(),
+                metrics.getRetried().sum(), dispatcher.getRejected(), engine.getQueue().size(), metrics.getInFlight().sum(), HoneybadgerMetrics.Latency.of(metrics.getConstruction()),
+                HoneybadgerMetrics.Latency.of(metrics.getSerialization()), HoneybadgerMetrics.Latency.of(metrics.getRoundTrip()));
+    }
+
+    /**
+     * Number of notices that have been thrown away because the delivery queue was full.
+     * @return Number of dropped notices.
+     */
+    public long getDroppedNoticeCount() {
+        return engine.getQueue().getDropped();
+    }
+
+    /**
+     * Number of notices that were not sent individually because they repeated a recent exception and were folded into a follow-up notice.
+     * @return Number of folded notices.
+     */
+    public long getFoldedNoticeCount() {
+        return deduplicator.getFolded();
+    }
+
+    /**
+     * Number of notices that were discarded because they exceeded the rate limits.
+     * @return Number of rate limited notices.
+     */
+    public long getRateLimitedNoticeCount() {
+        return rateLimiter.getLimited();
+    }
+
+    /**
+     * Number of notices that were not sent because of the sample rate for their exception.
+     * @return Number of sampled out notices.
+     */
+    public long getSampledOutNoticeCount() {
+        return sampler.getSampledOut();
+    }
+
+    /**
+     * Number of notices that were not sent because Honeybadger had been failing and the circuit breaker was open.
+     * @return Number of notices rejected by the circuit breaker.
+     */
+    public long getCircuitBreakerRejectedCount() {
+        return dispatcher.getRejected();
+    }
+
+    /**
+     * Proportion of stack frames that were found already encoded in the frame cache. A low value with a busy application suggests the cache is too small.
+     * @return Hit rate between 0 and 1.
+     */
+    public double getFrameCacheHitRate() {
+        return serializer.getFrameCache().getHitRate();
+    }
+
+    private void notifyHoneybadger(final Notice notice) {
+        // Notify about an error off of the main thread to avoid delaying the response in case of timing out to external service
+        if (engine.submit(notice)) {
+            metrics.getQueued().increment();
+        } else {
+            LOG.log(Level.FINE, "Honeybadger delivery queue is full, dropping notice");
+            DeliveryTracker.completeIfTracked(notice.getTracker(), DeliveryOutcome.DROPPED, -1);
+        }
     }
 
-    private void restCall(final Map<String, ?> notice) {
+    private void restCall(final Notice notice) {
+        final ConfigurationSnapshot current = configurationOf(notice);
+        final long start = System.nanoTime();
+        final byte[] body;
         try {
+            body = serializer.serialize(notice, current.getNotifier());
+        } catch (final IOException e) {
+            LOG.log(Level.SEVERE, "Failure occurred while trying to talk to Honeybadger", e);
+            metrics.getFailed().increment();
+            DeliveryTracker.completeIfTracked(notice.getTracker(), DeliveryOutcome.FAILED, -1);
+            return;
+        }
+        metrics.getSerialization().record(System.nanoTime() - start);
+
+        dispatcher.dispatch(body, current, notice.getTracker());
+    }
 
-            final Map<String, String> headers = new HashMap<String, String>();
-            headers.put("X-API-Key", configuration.getKey());
-            headers.put("Content-Type", "application/json");
+    private FlushResult flush(final long deadline, final boolean abandonRemaining, final List<byte[]> waiting) {
+        final long sent = metrics.getSent().sum();
+        final long failed = metrics.getFailed().sum();
 
-            final int response = request.call((HttpURLConnection) configuration.getUrl().openConnection(), "POST", headers, notice);
+        engine.deliverUntil(deadline);
+        if (batchingTransport != null) {
+            batchingTransport.flush();
+        }
+        while (!isIdle() && System.nanoTime() - deadline < 0) {
+            try {
+                Thread.sleep(10);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            engine.deliverUntil(deadline);
+        }
 
-            if (response < 200 || response > 299) {
-                LOG.log(Level.SEVERE, "Call to Honeybadger failed with code " + response);
+        int abandoned = 0;
+        if (abandonRemaining) {
+            Notice notice;
+            while ((notice = engine.getQueue().poll()) != null) {
+                abandon(notice);
+                abandoned++;
+            }
+            for (final byte[] body : waiting) {
+                abandon(body);
+                abandoned++;
             }
+        }
+
+        final int pending = engine.getQueue().size() + engine.getDelivering() + (int) metrics.getInFlight().sum() + dispatcher.getWaiting();
+        return new FlushResult(metrics.getSent().sum() - sent, metrics.getFailed().sum() - failed, abandoned, pending);
+    }
+
+    private boolean isIdle() {
+        return engine.getQueue().isEmpty() && engine.getDelivering() == 0 && metrics.getInFlight().sum() == 0;
+    }
+
+    private void abandon(final Notice notice) {
+        final ConfigurationSnapshot current = configurationOf(notice);
+        final Notice complete = notice.isDeferred() ? complete(current, notice.getThrowable(), notice.getSnapshot()) : notice;
+        try {
+            abandon(serializer.serialize(complete, current.getNotifier()));
         } catch (final IOException e) {
-            LOG.log(Level.SEVERE, "Failure occurred while trying to talk to Honeybadger", e);
+            LOG.log(Level.SEVERE, "Failure occurred while serializing abandoned Honeybadger notice", e);
+        }
+        DeliveryTracker.completeIfTracked(notice.getTracker(), DeliveryOutcome.ABANDONED, -1);
+    }
+
+    private void abandon(final byte[] body) {
+        try {
+            if (fallbackSink != null) {
+                fallbackSink.abandoned(body);
+            } else if (spool == null || !spool.append(body)) {
+                LOG.log(Level.WARNING, "Honeybadger was closed before a notice could be sent, dropping notice");
+            }
+        } catch (final RuntimeException e) {
+            LOG.log(Level.SEVERE, "Fallback sink failed to keep abandoned Honeybadger notice", e);
+        }
+    }
+
+    private void registerMXBean() {
+        try {
+            final ObjectName name = new ObjectName("com.notonthehighstreet.ratel:type=Honeybadger,name=" + ObjectName.quote(snapshot.get().getName()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMXBean(metrics, sampler, rateLimiter, deduplicator, engine.getQueue(), dispatcher), name);
+            mxBeanName = name;
+        } catch (final JMException e) {
+            LOG.log(Level.WARNING, "Could not register Honeybadger metrics with JMX", e);
+        }
+    }
+
+    private static Transport createTransport(final HoneybadgerOptions options, final HttpRequest request, final CircuitBreaker breaker) {
+        // The breaker is told about each request beneath any batching, so a failed batch counts once
+        final Transport transport = new CircuitBreakerTransport(options.getTransport() != null ? options.getTransport() : new HttpUrlConnectionTransport(request),
+                breaker);
+        if (options.getMaxBatchSize() <= 1) {
+            return transport;
+        }
+        return new BatchingTransport(transport, options.getMaxBatchSize(), options.getBatchLingerMillis(), TimeUnit.MILLISECONDS, options.getBatchFormat());
+    }
+
+    private static NoticeQueue createQueue(final HoneybadgerOptions options) {
+        if (!options.isLockFreeQueue()) {
+            return new BoundedNoticeQueue(options.getQueueCapacity(), options.getQueueMaxBytes(), options.getOverflowPolicy(), options.getBlockTimeoutMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+        if (options.getOverflowPolicy() != OverflowPolicy.DROP_NEWEST) {
+            LOG.log(Level.WARNING, "Lock-free Honeybadger queue always drops the newest notice when full, ignoring overflow policy " + options.getOverflowPolicy());
+        }
+        return new RingBufferNoticeQueue(options.getQueueCapacity(), options.getQueueMaxBytes());
+    }
+
+    private static NoticeSpool openSpool(final HoneybadgerOptions options) {
+        if (options.getSpoolDirectory() == null) {
+            return null;
+        }
+        try {
+            return new NoticeSpool(options.getSpoolDirectory(), options.getSpoolMaxBytes(), options.getSpoolSegmentBytes());
+        } catch (final IOException e) {
+            LOG.log(Level.SEVERE, "Unable to open Honeybadger spool, notices that fail to send will not be kept", e);
+            return null;
+        }
+    }
+
+    private Notice complete(final ConfigurationSnapshot current, final Throwable t, final RequestSnapshot snapshot) {
+        final long start = System.nanoTime();
+        // Read straight out of the snapshot's arrays, rather than rebuilding the maps that the notify overloads take
+        final Map<String, String> cgi = cgiData(current, snapshot.getMethod(), snapshot.getUserAgent(), snapshot.getRemoteAddress(), snapshot.getCookieHeader());
+        final Notice notice = constructNotice(current, t, constructRequest(snapshot.getUrl(), snapshot.getController(), snapshot.getAction(), snapshot.getJoinedParameters(),
+                snapshot.getSession(), snapshot.getContext(), cgi));
+        metrics.getConstruction().record(System.nanoTime() - start);
+        return notice;
+    }
+
+    private Notice constructNotice(final ConfigurationSnapshot current, final Throwable t, final String url, @Nullable final String controller, @Nullable final String action,
+                                   @Nullable final String method, @Nullable final String userAgent, @Nullable final String remoteAddress,
+                                   final Map<String, String[]> parameters, final Map<String, String> sessionDetails, final Map<String, String> cookies,
+                                   final Map<String, String> context) {
+        final long start = System.nanoTime();
+        final Map<String, String> cgi = cgiData(current, method, userAgent, remoteAddress, cookies.isEmpty() ? null : toString(cookies));
+        final Notice notice = constructNotice(current, t, constructRequest(url, controller, action, join(parameters), sessionDetails, context, cgi));
+        metrics.getConstruction().record(System.nanoTime() - start);
+        return notice;
+    }
+
+    private Map<String, String> cgiData(final ConfigurationSnapshot current, @Nullable final String method, @Nullable final String userAgent, @Nullable final String remoteAddress,
+                                        @Nullable final String cookieHeader) {
+        final Map<String, String> cgi = new HashMap<String, String>();
+
+        if (method != null) {
+            cgi.put("REQUEST_METHOD", method);
+        }
+        if (userAgent != null) {
+            cgi.put("HTTP_USER_AGENT", userAgent);
         }
+        if (remoteAddress != null) {
+            cgi.put("REMOTE_ADDR", remoteAddress);
+        }
+        final String serverSoftware = current.getServerSoftware();
+        if (serverSoftware != null) {
+            cgi.put("SERVER_SOFTWARE", serverSoftware);
+        }
+        if (cookieHeader != null) {
+            cgi.put("HTTP_COOKIE", cookieHeader);
+        }
+        return cgi;
     }
 
-    private boolean ignoreException(final Throwable t) {
-        return configuration.getExcludeExceptions().contains(t.getClass().getName());
+    private static Map<String, String> withSampleRate(final Map<String, String> context, final double sampleRate) {
+        // Recorded so that counts in Honeybadger can be scaled back up by the reciprocal
+        final Map<String, String> sampled = new HashMap<String, String>(context);
+        sampled.put(SAMPLE_RATE, Double.toString(sampleRate));
+        return sampled;
     }
 
-    private Map<String, Object> constructNotice(final Throwable e, final Request request) {
-        final Map<String, Object> notice = new HashMap<String, Object>();
-        notice.put("notifier", notifier);
-        notice.put("error", Error.fromException(e));
-        notice.put("server", Server.toServer(configuration.getEnvironment()));
-        notice.put("request", request);
+    private Notice constructNotice(final ConfigurationSnapshot current, final Throwable e, final Request request) {
+        final Notice notice = new Notice(e, Server.toServer(current.getEnvironment(), serverMetadata.get()), request);
+        notice.setConfiguration(current);
         return notice;
     }
 
-    private Request constructRequest(final String url, @Nullable final String controller, @Nullable final String action, final Map<String, String[]> parameters,
+    private ConfigurationSnapshot configurationOf(final Notice notice) {
+        final ConfigurationSnapshot current = notice.getConfiguration();
+        return current != null ? current : snapshot.get();
+    }
+
+    private Request constructRequest(final String url, @Nullable final String controller, @Nullable final String action, final Map<String, String> parameters,
                                      final Map<String, String> sessionDetails, final Map<String, String> context, final Map<String, String> cgi) {
 
         final Request request = new Request();
@@ -212,7 +710,7 @@ public class Honeybadger {
             request.setAction(action);
         }
 
-        request.setParams(join(parameters));
+        request.setParams(parameters);
         request.setSession(sessionDetails);
         request.setContext(context);
 
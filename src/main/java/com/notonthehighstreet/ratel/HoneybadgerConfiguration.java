@@ -31,7 +31,8 @@ import java.net.URL;
 import java.util.Collection;
 
 /**
- * Configuration that will be used when communicating with Honeybadger.
+ * Configuration that will be used when communicating with Honeybadger. The values are read when the {@linkplain Honeybadger} instance is constructed and again
+ * on each {@linkplain Honeybadger#reload()}, not for every notice.
  */
 public interface HoneybadgerConfiguration {
 
@@ -67,7 +68,8 @@ public interface HoneybadgerConfiguration {
     String getEnvironment();
 
     /**
-     * Any exception classes that should NOT be sent to Honeybadger. This must be the exact class name and not super classes.
+     * Any exception classes that should NOT be sent to Honeybadger. This must be the exact class name and not super classes, unless
+     * {@linkplain HoneybadgerOptions#setExcludeSubclasses(boolean)} is set.
      * @return Exception classes that shouldn't be sent to Honeybadger.
      */
     Collection<String> getExcludeExceptions();
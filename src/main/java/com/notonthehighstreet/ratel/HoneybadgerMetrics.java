@@ -0,0 +1,252 @@
+package com.notonthehighstreet.ratel;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.metrics.LatencyHistogram;
+
+/**
+ * Snapshot of what has happened to notices since the {@linkplain Honeybadger} instance was constructed, from {@linkplain Honeybadger#getMetrics()}. The values
+ * are read one after another while notices may still be arriving, so they are not guaranteed to be consistent with each other.
+ */
+public final class HoneybadgerMetrics {
+
+    /**
+     * Summary of a set of recorded durations. Percentiles are accurate to within a factor of two.
+     */
+    public static final class Latency {
+
+        private final long count;
+        private final double meanMicros;
+        private final double medianMicros;
+        private final double percentile99Micros;
+        private final double maxMicros;
+
+        Latency(final long count, final double meanMicros, final double medianMicros, final double percentile99Micros, final double maxMicros) {
+            this.count = count;
+            this.meanMicros = meanMicros;
+            this.medianMicros = medianMicros;
+            this.percentile99Micros = percentile99Micros;
+            this.maxMicros = maxMicros;
+        }
+
+        static Latency of(final LatencyHistogram histogram) {
+            return new Latency(histogram.getCount(), histogram.getMeanNanos() / 1000, histogram.getPercentileNanos(0.5) / 1000.0,
+                    histogram.getPercentileNanos(0.99) / 1000.0, histogram.getPercentileNanos(1) / 1000.0);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMicros() {
+            return meanMicros;
+        }
+
+        public double getMedianMicros() {
+            return medianMicros;
+        }
+
+        public double getPercentile99Micros() {
+            return percentile99Micros;
+        }
+
+        public double getMaxMicros() {
+            return maxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + meanMicros + "us, p50=" + medianMicros + "us, p99=" + percentile99Micros + "us, max=" + maxMicros + "us";
+        }
+    }
+
+    private final long submitted;
+    private final long ignored;
+    private final long sampledOut;
+    private final long rateLimited;
+    private final long folded;
+    private final long queued;
+    private final long dropped;
+    private final long sent;
+    private final long failed;
+    private final long retried;
+    private final long circuitBreakerRejected;
+    private final int queueDepth;
+    private final long inFlight;
+    private final Latency construction;
+    private final Latency serialization;
+    private final Latency roundTrip;
+
+    HoneybadgerMetrics(final long submitted, final long ignored, final long sampledOut, final long rateLimited, final long folded, final long queued,
+                       final long dropped, final long sent, final long failed, final long retried, final long circuitBreakerRejected, final int queueDepth,
+                       final long inFlight, final Latency construction, final Latency serialization, final Latency roundTrip) {
+        this.submitted = submitted;
+        this.ignored = ignored;
+        this.sampledOut = sampledOut;
+        this.rateLimited = rateLimited;
+        this.folded = folded;
+        this.queued = queued;
+        this.dropped = dropped;
+        this.sent = sent;
+        this.failed = failed;
+        this.retried = retried;
+        this.circuitBreakerRejected = circuitBreakerRejected;
+        this.queueDepth = queueDepth;
+        this.inFlight = inFlight;
+        this.construction = construction;
+        this.serialization = serialization;
+        this.roundTrip = roundTrip;
+    }
+
+    /**
+     * Exceptions Honeybadger was asked to be notified about.
+     * @return Number of notify calls.
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Exceptions not sent because they were excluded by the configuration.
+     * @return Number of excluded exceptions.
+     */
+    public long getIgnored() {
+        return ignored;
+    }
+
+    /**
+     * Notices not sent because of the sample rate for their exception.
+     * @return Number of sampled out notices.
+     */
+    public long getSampledOut() {
+        return sampledOut;
+    }
+
+    /**
+     * Notices discarded because they exceeded the rate limits.
+     * @return Number of rate limited notices.
+     */
+    public long getRateLimited() {
+        return rateLimited;
+    }
+
+    /**
+     * Notices folded into a follow-up notice because they repeated a recent exception.
+     * @return Number of folded notices.
+     */
+    public long getFolded() {
+        return folded;
+    }
+
+    /**
+     * Notices accepted by the delivery queue.
+     * @return Number of queued notices.
+     */
+    public long getQueued() {
+        return queued;
+    }
+
+    /**
+     * Notices thrown away because the delivery queue was full.
+     * @return Number of dropped notices.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Notices Honeybadger accepted, including those replayed from the spool.
+     * @return Number of sent notices.
+     */
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * Notices given up on, having been refused or having run out of attempts, whether or not they were then spooled.
+     * @return Number of failed notices.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Attempts to send a notice again after a failure.
+     * @return Number of retries.
+     */
+    public long getRetried() {
+        return retried;
+    }
+
+    /**
+     * Notices not sent because the circuit breaker was open.
+     * @return Number of notices rejected by the circuit breaker.
+     */
+    public long getCircuitBreakerRejected() {
+        return circuitBreakerRejected;
+    }
+
+    /**
+     * Notices waiting in the delivery queue.
+     * @return Number of queued notices not yet taken for delivery.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Requests to Honeybadger started but not yet completed.
+     * @return Number of requests in flight.
+     */
+    public long getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Time taken to build a notice from an exception and its request.
+     * @return Construction times.
+     */
+    public Latency getConstruction() {
+        return construction;
+    }
+
+    /**
+     * Time taken to turn a notice into JSON.
+     * @return Serialization times.
+     */
+    public Latency getSerialization() {
+        return serialization;
+    }
+
+    /**
+     * Time from starting a request to Honeybadger to learning its outcome.
+     * @return Request times.
+     */
+    public Latency getRoundTrip() {
+        return roundTrip;
+    }
+}
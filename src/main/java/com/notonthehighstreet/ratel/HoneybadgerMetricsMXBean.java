@@ -0,0 +1,66 @@
+package com.notonthehighstreet.ratel;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * Management interface registered for each {@linkplain Honeybadger} instance when {@linkplain HoneybadgerOptions#setJmxEnabled(boolean)} is set, under the name
+ * {@code com.notonthehighstreet.ratel:type=Honeybadger,name=<application name>}. Each attribute is described on {@linkplain HoneybadgerMetrics}.
+ */
+public interface HoneybadgerMetricsMXBean {
+
+    long getSubmitted();
+
+    long getIgnored();
+
+    long getSampledOut();
+
+    long getRateLimited();
+
+    long getFolded();
+
+    long getQueued();
+
+    long getDropped();
+
+    long getSent();
+
+    long getFailed();
+
+    long getRetried();
+
+    long getCircuitBreakerRejected();
+
+    int getQueueDepth();
+
+    long getInFlight();
+
+    HoneybadgerMetrics.Latency getConstruction();
+
+    HoneybadgerMetrics.Latency getSerialization();
+
+    HoneybadgerMetrics.Latency getRoundTrip();
+}
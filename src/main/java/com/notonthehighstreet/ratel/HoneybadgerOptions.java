@@ -0,0 +1,635 @@
+package com.notonthehighstreet.ratel;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.transport.BatchingTransport;
+import com.notonthehighstreet.ratel.transport.Transport;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tuning options for how notices are delivered to Honeybadger. Unlike {@linkplain HoneybadgerConfiguration} this does not need to be implemented; construct an instance,
+ * change whichever values need changing and pass it to {@linkplain Honeybadger}. The values are read once when the {@linkplain Honeybadger} instance is constructed.
+ */
+public class HoneybadgerOptions {
+
+    private int queueCapacity = 1000;
+    private long queueMaxBytes = 8 * 1024 * 1024;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+    private long blockTimeoutMillis = 50;
+    private boolean lockFreeQueue = false;
+    private boolean jmxEnabled = false;
+    private int deliveryConcurrency = 1;
+    private long deduplicationWindowMillis = 0;
+    private double globalRateLimit = 0;
+    private double perClassRateLimit = 0;
+    private int rateLimitBurst = 10;
+    private long metadataRefreshIntervalMillis = TimeUnit.MINUTES.toMillis(10);
+    private long configurationReloadIntervalMillis = 0;
+    private long shutdownTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+    private FallbackSink fallbackSink;
+    private Transport transport;
+    private boolean compressionEnabled = false;
+    private int compressionThreshold = 1024;
+    private int maxBatchSize = 1;
+    private long batchLingerMillis = 100;
+    private BatchingTransport.Format batchFormat = BatchingTransport.Format.JSON_ARRAY;
+    private File spoolDirectory;
+    private long spoolMaxBytes = 64 * 1024 * 1024;
+    private long spoolSegmentBytes = 1024 * 1024;
+    private long spoolReplayIntervalMillis = TimeUnit.SECONDS.toMillis(30);
+    private int maxDeliveryAttempts = 3;
+    private long retryBaseDelayMillis = 500;
+    private long retryMaxDelayMillis = TimeUnit.SECONDS.toMillis(30);
+    private int circuitBreakerFailureThreshold = 5;
+    private long circuitBreakerOpenMillis = TimeUnit.SECONDS.toMillis(30);
+    private CircuitBreakerFallback circuitBreakerFallback = CircuitBreakerFallback.SPOOL;
+    private boolean excludeSubclasses = false;
+    private boolean deferredConstruction = false;
+    private int frameCacheSize = 4096;
+    private int maxFramesPerCause = 256;
+    private int maxFrames = 1024;
+    private int maxChainLength = 32;
+    private final Map<String, Double> sampleRates = new LinkedHashMap<String, Double>();
+    private double defaultSampleRate = 1;
+
+    /**
+     * Maximum number of notices that can be waiting to be sent to Honeybadger.
+     * @return Maximum number of queued notices.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(final int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1 but was " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Maximum estimated size in bytes of all notices waiting to be sent to Honeybadger. Repeats held back by de-duplication are kept to the same size separately.
+     * @return Maximum estimated size of the queue in bytes.
+     */
+    public long getQueueMaxBytes() {
+        return queueMaxBytes;
+    }
+
+    public void setQueueMaxBytes(final long queueMaxBytes) {
+        if (queueMaxBytes < 1) {
+            throw new IllegalArgumentException("Queue size in bytes must be at least 1 but was " + queueMaxBytes);
+        }
+        this.queueMaxBytes = queueMaxBytes;
+    }
+
+    /**
+     * What to do with a notice when the queue is full.
+     * @return Policy applied when the queue is full.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * How long the calling thread will wait for space in the queue when using {@linkplain OverflowPolicy#BLOCK}.
+     * @return Maximum time to block in milliseconds.
+     */
+    public long getBlockTimeoutMillis() {
+        return blockTimeoutMillis;
+    }
+
+    public void setBlockTimeout(final long blockTimeout, final TimeUnit unit) {
+        this.blockTimeoutMillis = unit.toMillis(blockTimeout);
+    }
+
+    /**
+     * Maximum number of tasks submitted to the {@linkplain java.util.concurrent.Executor Executor} at once to send queued notices.
+     * @return Maximum number of concurrent deliveries.
+     */
+    public int getDeliveryConcurrency() {
+        return deliveryConcurrency;
+    }
+
+    public void setDeliveryConcurrency(final int deliveryConcurrency) {
+        if (deliveryConcurrency < 1) {
+            throw new IllegalArgumentException("Delivery concurrency must be at least 1 but was " + deliveryConcurrency);
+        }
+        this.deliveryConcurrency = deliveryConcurrency;
+    }
+
+    /**
+     * How long repeats of the same exception, thrown from the same place, are folded into a single follow-up notice. The first occurrence is always sent immediately.
+     * Zero disables de-duplication. Repeats that would take the notices held back past {@linkplain #getQueueMaxBytes()} are sent as they occur instead.
+     * @return Length of the aggregation window in milliseconds.
+     */
+    public long getDeduplicationWindowMillis() {
+        return deduplicationWindowMillis;
+    }
+
+    public void setDeduplicationWindow(final long window, final TimeUnit unit) {
+        this.deduplicationWindowMillis = unit.toMillis(window);
+    }
+
+    /**
+     * Maximum number of notices per second that will be sent across all exceptions. Notices over the limit are discarded before any work is done to build them.
+     * Zero means no limit.
+     * @return Maximum notices per second.
+     */
+    public double getGlobalRateLimit() {
+        return globalRateLimit;
+    }
+
+    public void setGlobalRateLimit(final double globalRateLimit) {
+        this.globalRateLimit = globalRateLimit;
+    }
+
+    /**
+     * Maximum number of notices per second that will be sent for any single exception class. Zero means no limit.
+     * @return Maximum notices per second for each exception class.
+     */
+    public double getPerClassRateLimit() {
+        return perClassRateLimit;
+    }
+
+    public void setPerClassRateLimit(final double perClassRateLimit) {
+        this.perClassRateLimit = perClassRateLimit;
+    }
+
+    /**
+     * Number of notices that can be sent at once after a quiet period, before the rate limits apply.
+     * @return Size of the burst allowed by the rate limits.
+     */
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public void setRateLimitBurst(final int rateLimitBurst) {
+        if (rateLimitBurst < 1) {
+            throw new IllegalArgumentException("Rate limit burst must be at least 1 but was " + rateLimitBurst);
+        }
+        this.rateLimitBurst = rateLimitBurst;
+    }
+
+    /**
+     * How often the host name and project root reported with every notice are worked out again in the background. Zero means they are only worked out once.
+     * @return Time between refreshes in milliseconds.
+     */
+    public long getMetadataRefreshIntervalMillis() {
+        return metadataRefreshIntervalMillis;
+    }
+
+    public void setMetadataRefreshInterval(final long interval, final TimeUnit unit) {
+        this.metadataRefreshIntervalMillis = unit.toMillis(interval);
+    }
+
+    /**
+     * Transport used to send notices to Honeybadger. When not set, notices are sent with a blocking {@linkplain java.net.HttpURLConnection}.
+     * @return Configured transport, or null to use the default.
+     */
+    @CheckForNull
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(@Nullable final Transport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Whether notices are sent gzip compressed by the default transport.
+     * @return True if large notices are compressed.
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(final boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * Size a serialized notice must reach before it is compressed. Smaller notices gain little from compression and are sent as they are.
+     * @return Minimum size in bytes of a compressed notice.
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(final int compressionThreshold) {
+        if (compressionThreshold < 0) {
+            throw new IllegalArgumentException("Compression threshold must not be negative but was " + compressionThreshold);
+        }
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Directory where notices that could not be sent are kept until Honeybadger can be reached again. Notices left there when the application stops are sent after it
+     * starts again. When not set, notices that could not be sent are thrown away.
+     * @return Spool directory, or null if notices are not spooled.
+     */
+    @CheckForNull
+    public File getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public void setSpoolDirectory(@Nullable final File spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    /**
+     * Maximum size of the spool. Once it is full the oldest notices are thrown away to make room.
+     * @return Maximum size of the spool in bytes.
+     */
+    public long getSpoolMaxBytes() {
+        return spoolMaxBytes;
+    }
+
+    public void setSpoolMaxBytes(final long spoolMaxBytes) {
+        if (spoolMaxBytes < 1) {
+            throw new IllegalArgumentException("Spool size must be at least 1 byte but was " + spoolMaxBytes);
+        }
+        this.spoolMaxBytes = spoolMaxBytes;
+    }
+
+    /**
+     * Size of each file in the spool. Space is reclaimed a whole file at a time.
+     * @return Size of a spool file in bytes.
+     */
+    public long getSpoolSegmentBytes() {
+        return spoolSegmentBytes;
+    }
+
+    public void setSpoolSegmentBytes(final long spoolSegmentBytes) {
+        if (spoolSegmentBytes < 1) {
+            throw new IllegalArgumentException("Spool segment size must be at least 1 byte but was " + spoolSegmentBytes);
+        }
+        this.spoolSegmentBytes = spoolSegmentBytes;
+    }
+
+    /**
+     * How often spooled notices are sent to Honeybadger again.
+     * @return Time between attempts in milliseconds.
+     */
+    public long getSpoolReplayIntervalMillis() {
+        return spoolReplayIntervalMillis;
+    }
+
+    public void setSpoolReplayInterval(final long interval, final TimeUnit unit) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Spool replay interval must be positive but was " + interval);
+        }
+        this.spoolReplayIntervalMillis = unit.toMillis(interval);
+    }
+
+    /**
+     * Number of times a notice is sent before giving up, when Honeybadger cannot be reached or responds with a 429 or 5xx. One means notices are never retried.
+     * @return Maximum number of attempts for each notice.
+     */
+    public int getMaxDeliveryAttempts() {
+        return maxDeliveryAttempts;
+    }
+
+    public void setMaxDeliveryAttempts(final int maxDeliveryAttempts) {
+        if (maxDeliveryAttempts < 1) {
+            throw new IllegalArgumentException("Delivery attempts must be at least 1 but was " + maxDeliveryAttempts);
+        }
+        this.maxDeliveryAttempts = maxDeliveryAttempts;
+    }
+
+    /**
+     * Delay before the first retry, which doubles for each retry after it. The actual delay is picked at random up to this value.
+     * @return Base retry delay in milliseconds.
+     */
+    public long getRetryBaseDelayMillis() {
+        return retryBaseDelayMillis;
+    }
+
+    public void setRetryBaseDelay(final long delay, final TimeUnit unit) {
+        this.retryBaseDelayMillis = unit.toMillis(delay);
+    }
+
+    /**
+     * Longest delay before a retry. If Honeybadger asks to wait longer than this the notice is not retried.
+     * @return Maximum retry delay in milliseconds.
+     */
+    public long getRetryMaxDelayMillis() {
+        return retryMaxDelayMillis;
+    }
+
+    public void setRetryMaxDelay(final long delay, final TimeUnit unit) {
+        this.retryMaxDelayMillis = unit.toMillis(delay);
+    }
+
+    /**
+     * Number of failures in a row, counting connection failures, timeouts and 5xx responses, after which calls to Honeybadger stop for a while. Zero means they never
+     * stop.
+     * @return Failures needed to open the circuit breaker.
+     */
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public void setCircuitBreakerFailureThreshold(final int circuitBreakerFailureThreshold) {
+        if (circuitBreakerFailureThreshold < 0) {
+            throw new IllegalArgumentException("Circuit breaker failure threshold must not be negative but was " + circuitBreakerFailureThreshold);
+        }
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * How long calls to Honeybadger stop for once the circuit breaker opens, before a single call is let through to see if it has recovered.
+     * @return Time the circuit breaker stays open in milliseconds.
+     */
+    public long getCircuitBreakerOpenMillis() {
+        return circuitBreakerOpenMillis;
+    }
+
+    public void setCircuitBreakerOpenDuration(final long duration, final TimeUnit unit) {
+        this.circuitBreakerOpenMillis = unit.toMillis(duration);
+    }
+
+    /**
+     * What happens to notices while the circuit breaker is open.
+     * @return Fallback for notices rejected by the circuit breaker.
+     */
+    public CircuitBreakerFallback getCircuitBreakerFallback() {
+        return circuitBreakerFallback;
+    }
+
+    public void setCircuitBreakerFallback(final CircuitBreakerFallback circuitBreakerFallback) {
+        this.circuitBreakerFallback = circuitBreakerFallback;
+    }
+
+    /**
+     * Whether notices are built on the delivery thread rather than the thread calling notify. When set, notify only takes a copy of its arguments and queues it,
+     * leaving the stack trace to be read and duplicates to be detected on the delivery thread. The exception must not be changed once it has been passed to notify.
+     * @return True if notices are built on the delivery thread.
+     */
+    public boolean isDeferredConstruction() {
+        return deferredConstruction;
+    }
+
+    public void setDeferredConstruction(final boolean deferredConstruction) {
+        this.deferredConstruction = deferredConstruction;
+    }
+
+    /**
+     * Number of stack frames kept already encoded as JSON, so that frames seen over and over are not encoded again for every notice. Zero turns the cache off.
+     * @return Maximum number of cached frames.
+     */
+    public int getFrameCacheSize() {
+        return frameCacheSize;
+    }
+
+    public void setFrameCacheSize(final int frameCacheSize) {
+        if (frameCacheSize < 0) {
+            throw new IllegalArgumentException("Frame cache size must not be negative but was " + frameCacheSize);
+        }
+        this.frameCacheSize = frameCacheSize;
+    }
+
+    /**
+     * Maximum number of stack frames sent for each exception in a cause chain. Frames beyond this are replaced with a single "... n more" entry.
+     * @return Maximum frames for each cause.
+     */
+    public int getMaxFramesPerCause() {
+        return maxFramesPerCause;
+    }
+
+    public void setMaxFramesPerCause(final int maxFramesPerCause) {
+        if (maxFramesPerCause < 0) {
+            throw new IllegalArgumentException("Maximum frames per cause must not be negative but was " + maxFramesPerCause);
+        }
+        this.maxFramesPerCause = maxFramesPerCause;
+    }
+
+    /**
+     * Maximum number of stack frames sent for a notice, across the whole cause chain.
+     * @return Maximum frames for each notice.
+     */
+    public int getMaxFrames() {
+        return maxFrames;
+    }
+
+    public void setMaxFrames(final int maxFrames) {
+        if (maxFrames < 0) {
+            throw new IllegalArgumentException("Maximum frames must not be negative but was " + maxFrames);
+        }
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * Maximum number of exceptions, counting causes and suppressed exceptions, included in the backtrace of a notice.
+     * @return Maximum length of the cause chain.
+     */
+    public int getMaxChainLength() {
+        return maxChainLength;
+    }
+
+    public void setMaxChainLength(final int maxChainLength) {
+        if (maxChainLength < 1) {
+            throw new IllegalArgumentException("Maximum chain length must be at least 1 but was " + maxChainLength);
+        }
+        this.maxChainLength = maxChainLength;
+    }
+
+    /**
+     * Proportion of notices sent for each exception class or package, for exceptions too common to be worth sending every time. An exception uses the rule for its
+     * own class if there is one, otherwise the rule for the closest enclosing package.
+     * @return Sample rates between 0 and 1, keyed by class or package name.
+     */
+    public Map<String, Double> getSampleRates() {
+        return Collections.unmodifiableMap(sampleRates);
+    }
+
+    /**
+     * Send only a proportion of the notices for an exception class, or for every exception in a package.
+     * @param classOrPackage Fully qualified name of the exception class or package.
+     * @param sampleRate Proportion of notices to send, between 0 and 1.
+     */
+    public void setSampleRate(final String classOrPackage, final double sampleRate) {
+        checkSampleRate(sampleRate);
+        sampleRates.put(classOrPackage, sampleRate);
+    }
+
+    /**
+     * Proportion of notices sent for exceptions that no sample rate rule matches.
+     * @return Sample rate between 0 and 1.
+     */
+    public double getDefaultSampleRate() {
+        return defaultSampleRate;
+    }
+
+    public void setDefaultSampleRate(final double defaultSampleRate) {
+        checkSampleRate(defaultSampleRate);
+        this.defaultSampleRate = defaultSampleRate;
+    }
+
+    private static void checkSampleRate(final double sampleRate) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1 but was " + sampleRate);
+        }
+    }
+
+    /**
+     * Whether the excluded exceptions in {@linkplain HoneybadgerConfiguration#getExcludeExceptions()} also exclude their subclasses, and any exception implementing
+     * an excluded interface. When not set only exceptions of exactly the named class are excluded.
+     * @return True if exclusions match subclasses and interfaces.
+     */
+    public boolean isExcludeSubclasses() {
+        return excludeSubclasses;
+    }
+
+    public void setExcludeSubclasses(final boolean excludeSubclasses) {
+        this.excludeSubclasses = excludeSubclasses;
+    }
+
+    /**
+     * Whether notices are queued in a lock-free ring buffer rather than a queue guarded by a lock. Worth setting when many threads notify at once. The capacity is
+     * rounded up to a power of two, and when the ring buffer is full the newest notice is always dropped, whatever the overflow policy.
+     * @return True if the lock-free queue is used.
+     */
+    public boolean isLockFreeQueue() {
+        return lockFreeQueue;
+    }
+
+    public void setLockFreeQueue(final boolean lockFreeQueue) {
+        this.lockFreeQueue = lockFreeQueue;
+    }
+
+    /**
+     * Maximum number of notices sent together in a single request. Above one, notices are collected into batches by a {@linkplain BatchingTransport} wrapped around
+     * the transport, which is only useful when notices are sent to a collector that accepts batches rather than to Honeybadger itself.
+     * @return Maximum notices in each request.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(final int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be at least 1 but was " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Longest time a notice waits for the rest of its batch to arrive before the batch is sent anyway.
+     * @return Linger time in milliseconds.
+     */
+    public long getBatchLingerMillis() {
+        return batchLingerMillis;
+    }
+
+    public void setBatchLinger(final long linger, final TimeUnit unit) {
+        if (linger < 0) {
+            throw new IllegalArgumentException("Batch linger must not be negative but was " + linger);
+        }
+        this.batchLingerMillis = unit.toMillis(linger);
+    }
+
+    /**
+     * How the notices in a batch are written into the body of the request.
+     * @return Format of each batch.
+     */
+    public BatchingTransport.Format getBatchFormat() {
+        return batchFormat;
+    }
+
+    public void setBatchFormat(final BatchingTransport.Format batchFormat) {
+        this.batchFormat = batchFormat;
+    }
+
+    /**
+     * Whether the metrics of the {@linkplain Honeybadger} instance are registered with the platform MBean server, as described on
+     * {@linkplain HoneybadgerMetricsMXBean}. The name includes the application name, so only one instance for each application can be registered.
+     * @return True if metrics are exposed over JMX.
+     */
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    public void setJmxEnabled(final boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    /**
+     * How often the {@linkplain HoneybadgerConfiguration} is read again to pick up changes. Zero means it is only read again when
+     * {@linkplain Honeybadger#reload()} is called.
+     * @return Time between reloads in milliseconds.
+     */
+    public long getConfigurationReloadIntervalMillis() {
+        return configurationReloadIntervalMillis;
+    }
+
+    public void setConfigurationReloadInterval(final long interval, final TimeUnit unit) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("Configuration reload interval must not be negative but was " + interval);
+        }
+        this.configurationReloadIntervalMillis = unit.toMillis(interval);
+    }
+
+    /**
+     * Longest time {@linkplain Honeybadger#close()} spends sending the notices still waiting, before handing the rest to the fallback sink. Sending a notice that
+     * has already started is not interrupted, so with the default transport close can overrun by up to the connection and read timeouts.
+     * @return Shutdown timeout in milliseconds.
+     */
+    public long getShutdownTimeoutMillis() {
+        return shutdownTimeoutMillis;
+    }
+
+    public void setShutdownTimeout(final long timeout, final TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Shutdown timeout must not be negative but was " + timeout);
+        }
+        this.shutdownTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Where notices that could not be sent before the shutdown timeout go. When not set they are written to the spool if there is one.
+     * @return Sink for abandoned notices, or null if there is none.
+     */
+    @CheckForNull
+    public FallbackSink getFallbackSink() {
+        return fallbackSink;
+    }
+
+    public void setFallbackSink(@Nullable final FallbackSink fallbackSink) {
+        this.fallbackSink = fallbackSink;
+    }
+}
@@ -0,0 +1,138 @@
+package com.notonthehighstreet.ratel;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.delivery.Dispatcher;
+import com.notonthehighstreet.ratel.internal.delivery.NoticeQueue;
+import com.notonthehighstreet.ratel.internal.filter.Deduplicator;
+import com.notonthehighstreet.ratel.internal.filter.RateLimiter;
+import com.notonthehighstreet.ratel.internal.filter.Sampler;
+import com.notonthehighstreet.ratel.internal.metrics.DeliveryMetrics;
+
+/**
+ * Exposes the metrics of a {@linkplain Honeybadger} instance over JMX. Each attribute reads only its own counter, so a monitoring agent polling every attribute
+ * does not build a full {@linkplain HoneybadgerMetrics} snapshot for each one.
+ */
+class MetricsMXBean implements HoneybadgerMetricsMXBean {
+
+    private final DeliveryMetrics metrics;
+    private final Sampler sampler;
+    private final RateLimiter rateLimiter;
+    private final Deduplicator deduplicator;
+    private final NoticeQueue queue;
+    private final Dispatcher dispatcher;
+
+    MetricsMXBean(final DeliveryMetrics metrics, final Sampler sampler, final RateLimiter rateLimiter, final Deduplicator deduplicator, final NoticeQueue queue,
+                  final Dispatcher dispatcher) {
+        this.metrics = metrics;
+        this.sampler = sampler;
+        this.rateLimiter = rateLimiter;
+        this.deduplicator = deduplicator;
+        this.queue = queue;
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public long getSubmitted() {
+        return metrics.getSubmitted().sum();
+    }
+
+    @Override
+    public long getIgnored() {
+        return metrics.getIgnored().sum();
+    }
+
+    @Override
+    public long getSampledOut() {
+        return sampler.getSampledOut();
+    }
+
+    @Override
+    public long getRateLimited() {
+        return rateLimiter.getLimited();
+    }
+
+    @Override
+    public long getFolded() {
+        return deduplicator.getFolded();
+    }
+
+    @Override
+    public long getQueued() {
+        return metrics.getQueued().sum();
+    }
+
+    @Override
+    public long getDropped() {
+        return queue.getDropped();
+    }
+
+    @Override
+    public long getSent() {
+        return metrics.getSent().sum();
+    }
+
+    @Override
+    public long getFailed() {
+        return metrics.getFailed().sum();
+    }
+
+    @Override
+    public long getRetried() {
+        return metrics.getRetried().sum();
+    }
+
+    @Override
+    public long getCircuitBreakerRejected() {
+        return dispatcher.getRejected();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public long getInFlight() {
+        return metrics.getInFlight().sum();
+    }
+
+    @Override
+    public HoneybadgerMetrics.Latency getConstruction() {
+        return HoneybadgerMetrics.Latency.of(metrics.getConstruction());
+    }
+
+    @Override
+    public HoneybadgerMetrics.Latency getSerialization() {
+        return HoneybadgerMetrics.Latency.of(metrics.getSerialization());
+    }
+
+    @Override
+    public HoneybadgerMetrics.Latency getRoundTrip() {
+        return HoneybadgerMetrics.Latency.of(metrics.getRoundTrip());
+    }
+}
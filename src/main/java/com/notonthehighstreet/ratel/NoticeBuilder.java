@@ -0,0 +1,186 @@
+package com.notonthehighstreet.ratel;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.delivery.DeliveryTracker;
+import com.notonthehighstreet.ratel.internal.delivery.RequestSnapshot;
+
+import javax.annotation.Nullable;
+
+/**
+ * Fluent alternative to the {@linkplain Honeybadger#notify} overloads that collects the details of a request one at a time, without the caller building maps.
+ * Obtain one from {@linkplain Honeybadger#notice()}, fill it in and call {@linkplain #send(Throwable)}, or {@linkplain #submit(Throwable)} to find out what
+ * happened to the notice. Each thread is given the same builder every time, emptied when it is handed out and after each send, so a steady stream of
+ * notifications allocates very little. A builder must only be used by the thread that obtained it, must be sent before that thread obtains another, and must
+ * not be used after send.
+ */
+public final class NoticeBuilder {
+
+    private final RequestSnapshot.Builder request = new RequestSnapshot.Builder();
+    private Honeybadger honeybadger;
+
+    /**
+     * @param url URL that was being called when the error occurred.
+     * @return This builder.
+     */
+    public NoticeBuilder url(final String url) {
+        request.setUrl(url);
+        return this;
+    }
+
+    /**
+     * @param controller Controller that was called by the user.
+     * @return This builder.
+     */
+    public NoticeBuilder controller(@Nullable final String controller) {
+        request.setController(controller);
+        return this;
+    }
+
+    /**
+     * @param action Action that was called on the controller by the user.
+     * @return This builder.
+     */
+    public NoticeBuilder action(@Nullable final String action) {
+        request.setAction(action);
+        return this;
+    }
+
+    /**
+     * @param method HTTP method that was being used when the exception occurred.
+     * @return This builder.
+     */
+    public NoticeBuilder method(@Nullable final String method) {
+        request.setMethod(method);
+        return this;
+    }
+
+    /**
+     * @param userAgent User agent of the user that made the request.
+     * @return This builder.
+     */
+    public NoticeBuilder userAgent(@Nullable final String userAgent) {
+        request.setUserAgent(userAgent);
+        return this;
+    }
+
+    /**
+     * @param remoteAddress Address of the user that made the request.
+     * @return This builder.
+     */
+    public NoticeBuilder remoteAddress(@Nullable final String remoteAddress) {
+        request.setRemoteAddress(remoteAddress);
+        return this;
+    }
+
+    /**
+     * Add a parameter that had been sent with the HTTP request, such as an entry from {@code ServletRequest.getParameterMap()}. The values are not copied.
+     * @param name Name of the parameter.
+     * @param values Values of the parameter.
+     * @return This builder.
+     */
+    public NoticeBuilder parameter(final String name, final String... values) {
+        request.addParameter(name, values);
+        return this;
+    }
+
+    /**
+     * @param name Name of a session attribute associated with the HTTP request.
+     * @param value Value of the session attribute.
+     * @return This builder.
+     */
+    public NoticeBuilder session(final String name, final String value) {
+        request.addSession(name, value);
+        return this;
+    }
+
+    /**
+     * @param name Name of a cookie associated with the HTTP request.
+     * @param value Value of the cookie.
+     * @return This builder.
+     */
+    public NoticeBuilder cookie(final String name, final String value) {
+        request.addCookie(name, value);
+        return this;
+    }
+
+    /**
+     * @param name Name of an entry in the context of the exception.
+     * @param value Value of the context entry.
+     * @return This builder.
+     */
+    public NoticeBuilder context(final String name, final String value) {
+        request.addContext(name, value);
+        return this;
+    }
+
+    /**
+     * Notify Honeybadger that an exception occurred, with the details collected by this builder. The builder is emptied and handed back for reuse.
+     * @param t Exception that occurred.
+     */
+    public void send(final Throwable t) {
+        try {
+            target().notify(request, t, null);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Notify Honeybadger that an exception occurred, with the details collected by this builder, and find out what happened to the notice. The builder is emptied
+     * and handed back for reuse.
+     * @param t Exception that occurred.
+     * @return Future completed once the notice has been sent or given up on.
+     */
+    public DeliveryFuture submit(final Throwable t) {
+        final DeliveryTracker tracker = new DeliveryTracker();
+        try {
+            target().notify(request, t, tracker);
+        } finally {
+            release();
+        }
+        return new DeliveryFuture(tracker);
+    }
+
+    void acquire(final Honeybadger honeybadger) {
+        // Whatever was left by a builder that was never sent is thrown away
+        request.reset();
+        this.honeybadger = honeybadger;
+    }
+
+    private Honeybadger target() {
+        if (honeybadger == null) {
+            throw new IllegalStateException("Notice has already been sent, obtain a new builder from Honeybadger.notice()");
+        }
+        return honeybadger;
+    }
+
+    private void release() {
+        request.reset();
+        honeybadger = null;
+    }
+}
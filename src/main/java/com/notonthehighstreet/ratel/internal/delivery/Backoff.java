@@ -0,0 +1,108 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import javax.annotation.Nullable;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Works out how long to wait before trying to send a notice again. The delay grows exponentially with each attempt up to a cap, and is then picked at random between
+ * zero and that value ("full jitter") so that many instances failing at the same moment do not all retry at the same moment.
+ */
+public class Backoff {
+
+    private static final String HTTP_DATE = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Random random;
+
+    public Backoff(final long baseDelayMillis, final long maxDelayMillis, final Random random) {
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.random = random;
+    }
+
+    /**
+     * Delay before the given retry.
+     * @param retry Number of the retry, starting at 1 for the retry after the first attempt.
+     * @return Delay in milliseconds.
+     */
+    public long delayMillis(final int retry) {
+        // Stop doubling well before the shift could overflow
+        final long ceiling = retry > 30 ? maxDelayMillis : Math.min(maxDelayMillis, baseDelayMillis << (retry - 1));
+        return (long) (random.nextDouble() * (ceiling + 1));
+    }
+
+    /**
+     * Delay before retrying when Honeybadger has said how long to wait. A little jitter is added so that instances told the same thing do not all retry at once.
+     * @param retryAfterMillis Delay asked for by Honeybadger in milliseconds.
+     * @return Delay in milliseconds.
+     */
+    public long delayMillisAfter(final long retryAfterMillis) {
+        return retryAfterMillis + (long) (random.nextDouble() * (baseDelayMillis + 1));
+    }
+
+    /**
+     * Largest delay before a retry. A Retry-After header asking for longer than this is not waited for.
+     * @return Maximum delay in milliseconds.
+     */
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Read a Retry-After header, which may be either a number of seconds or an HTTP date.
+     * @param retryAfter Value of the header.
+     * @param now Current time in milliseconds since the epoch.
+     * @return Delay in milliseconds, or -1 if there was no header or it could not be understood.
+     */
+    public static long parseRetryAfter(@Nullable final String retryAfter, final long now) {
+        if (retryAfter == null) {
+            return -1;
+        }
+
+        final String value = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (final NumberFormatException e) {
+            // Not a number of seconds, so should be a date
+        }
+
+        final SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, format.parse(value).getTime() - now);
+        } catch (final ParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.DeliveryOutcome;
+import com.notonthehighstreet.ratel.OverflowPolicy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue of notices that is bounded both by the number of notices and their estimated size, so that a burst of exceptions cannot exhaust the heap.
+ */
+public class BoundedNoticeQueue implements NoticeQueue {
+
+    private final int capacity;
+    private final long maxBytes;
+    private final OverflowPolicy policy;
+    private final long blockTimeoutNanos;
+
+    private final ArrayDeque<Notice> notices = new ArrayDeque<Notice>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private long bytes;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public BoundedNoticeQueue(final int capacity, final long maxBytes, final OverflowPolicy policy, final long blockTimeout, final TimeUnit unit) {
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+        this.blockTimeoutNanos = unit.toNanos(blockTimeout);
+    }
+
+    /**
+     * Add a notice to the end of the queue, applying the overflow policy if there is no room.
+     * @param notice Notice to add.
+     * @return Whether the notice was added to the queue.
+     */
+    @Override
+    public boolean offer(final Notice notice) {
+        final int size = notice.getEstimatedSize();
+        if (size > maxBytes) {
+            // Would never fit, even in an empty queue
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        List<DeliveryTracker> evictedTrackers = null;
+        lock.lock();
+        try {
+            switch (policy) {
+                case DROP_OLDEST:
+                    while (!fits(size)) {
+                        final Notice oldest = notices.removeFirst();
+                        bytes -= oldest.getEstimatedSize();
+                        evicted.incrementAndGet();
+                        if (oldest.getTracker() != null) {
+                            if (evictedTrackers == null) {
+                                evictedTrackers = new ArrayList<DeliveryTracker>();
+                            }
+                            evictedTrackers.add(oldest.getTracker());
+                        }
+                    }
+                    break;
+                case BLOCK:
+                    long remaining = blockTimeoutNanos;
+                    while (!fits(size)) {
+                        if (remaining <= 0) {
+                            timedOut.incrementAndGet();
+                            return false;
+                        }
+                        try {
+                            remaining = notFull.awaitNanos(remaining);
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            timedOut.incrementAndGet();
+                            return false;
+                        }
+                    }
+                    break;
+                default:
+                    if (!fits(size)) {
+                        rejected.incrementAndGet();
+                        return false;
+                    }
+                    break;
+            }
+
+            notices.addLast(notice);
+            bytes += size;
+            return true;
+        } finally {
+            lock.unlock();
+            // Listeners run outside the lock so that they can't hold up other threads queuing notices
+            if (evictedTrackers != null) {
+                for (final DeliveryTracker tracker : evictedTrackers) {
+                    tracker.complete(DeliveryOutcome.DROPPED, -1);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Notice poll() {
+        lock.lock();
+        try {
+            final Notice notice = notices.pollFirst();
+            if (notice != null) {
+                bytes -= notice.getEstimatedSize();
+                notFull.signal();
+            }
+            return notice;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(final Notice[] batch) {
+        lock.lock();
+        try {
+            int count = 0;
+            Notice notice;
+            while (count < batch.length && (notice = notices.pollFirst()) != null) {
+                bytes -= notice.getEstimatedSize();
+                batch[count++] = notice;
+            }
+            if (count > 0) {
+                notFull.signalAll();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return notices.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return notices.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Notices that were not queued because the queue was full, or because they were too big to ever fit.
+     * @return Number of notices rejected on submission.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Notices that were removed from the queue to make room for newer ones.
+     * @return Number of notices evicted.
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * Notices that were not queued because no room became available within the block timeout.
+     * @return Number of notices that timed out waiting for space.
+     */
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    @Override
+    public long getDropped() {
+        return rejected.get() + evicted.get() + timedOut.get();
+    }
+
+    private boolean fits(final int size) {
+        return notices.size() < capacity && bytes + size <= maxBytes;
+    }
+}
@@ -0,0 +1,113 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stops calls to Honeybadger once it has failed a number of times in a row, so that an outage costs a quick rejection per notice rather than a connection timeout.
+ * After the open duration a single probe is let through; if it succeeds the breaker closes again, otherwise it stays open for another open duration.
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOG = Logger.getLogger(CircuitBreaker.class.getName());
+
+    /**
+     * State of the breaker.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicReference<State> state = new AtomicReference<State>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+
+    /**
+     * @param failureThreshold Number of failures in a row that opens the breaker. Zero means the breaker never opens.
+     * @param openDuration How long the breaker stays open before a probe is let through.
+     * @param unit Unit of the open duration.
+     */
+    public CircuitBreaker(final int failureThreshold, final long openDuration, final TimeUnit unit) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = unit.toNanos(openDuration);
+    }
+
+    /**
+     * Whether a call may be made now. Every call that is allowed must be followed by {@linkplain #onSuccess()} or {@linkplain #onFailure()}.
+     * @return True if the call may be made.
+     */
+    public boolean allow() {
+        return allow(System.nanoTime());
+    }
+
+    boolean allow(final long now) {
+        switch (state.get()) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                // Only the first caller after the open duration gets to probe
+                return now - openedAt >= openNanos && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+            default:
+                return false;
+        }
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.getAndSet(State.CLOSED) != State.CLOSED) {
+            LOG.log(Level.INFO, "Honeybadger circuit breaker closed, sending notices again");
+        }
+    }
+
+    public void onFailure() {
+        onFailure(System.nanoTime());
+    }
+
+    void onFailure(final long now) {
+        if (failureThreshold == 0) {
+            return;
+        }
+        if (state.get() == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt = now;
+            // Only warn on the transition, not for every failure reported while already open
+            if (state.getAndSet(State.OPEN) != State.OPEN) {
+                LOG.log(Level.WARNING, "Honeybadger circuit breaker opened, rejecting notices for the next " + TimeUnit.NANOSECONDS.toMillis(openNanos) + "ms");
+            }
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+}
@@ -0,0 +1,81 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.transport.Transport;
+import com.notonthehighstreet.ratel.transport.TransportCallback;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Tells a {@linkplain CircuitBreaker} the outcome of every request made by the transport it wraps. It sits beneath any {@linkplain
+ * com.notonthehighstreet.ratel.transport.BatchingTransport BatchingTransport}, so a batch that fails counts as one failure rather than one for each notice in it.
+ */
+public class CircuitBreakerTransport implements Transport {
+
+    private final Transport delegate;
+    private final CircuitBreaker breaker;
+
+    /**
+     * @param delegate Transport that makes the requests.
+     * @param breaker Circuit breaker told the outcome of each request.
+     */
+    public CircuitBreakerTransport(final Transport delegate, final CircuitBreaker breaker) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    @Override
+    public void send(final URL url, final Map<String, String> headers, final byte[] body, final TransportCallback callback) {
+        final TransportCallback recorded = new TransportCallback() {
+            @Override
+            public void completed(final int statusCode, @Nullable final String retryAfter) {
+                // A 429 or a rejected notice still shows that Honeybadger is up and answering
+                if (statusCode >= 500) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess();
+                }
+                callback.completed(statusCode, retryAfter);
+            }
+
+            @Override
+            public void failed(final IOException e) {
+                breaker.onFailure();
+                callback.failed(e);
+            }
+        };
+        try {
+            delegate.send(url, headers, body, recorded);
+        } catch (final RuntimeException e) {
+            recorded.failed(new IOException("Honeybadger transport failed unexpectedly", e));
+        }
+    }
+}
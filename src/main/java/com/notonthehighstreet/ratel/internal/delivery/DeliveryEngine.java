@@ -0,0 +1,178 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.DeliveryOutcome;
+import com.notonthehighstreet.ratel.internal.metrics.DeliveryMetrics;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands queued notices to a {@linkplain Handler} on the supplied {@linkplain Executor}. Rather than submitting a task per notice, at most a fixed number of drain tasks
+ * are ever submitted at once, so the executor's own queue stays small however quickly notices arrive. Each drain task takes notices off the queue in batches.
+ */
+public class DeliveryEngine {
+
+    private static final Logger LOG = Logger.getLogger(DeliveryEngine.class.getName());
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * Receives notices taken off the queue.
+     */
+    public interface Handler {
+        void deliver(Notice notice);
+    }
+
+    private final NoticeQueue queue;
+    private final Executor executor;
+    private final Handler handler;
+    private final int concurrency;
+    private final DeliveryMetrics metrics;
+    private final AtomicInteger activeDrains = new AtomicInteger();
+    private final AtomicInteger delivering = new AtomicInteger();
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * @param queue Queue that notices wait in.
+     * @param executor Executor that drain tasks run on.
+     * @param handler Handler given each notice.
+     * @param concurrency Maximum number of drain tasks at once.
+     * @param metrics Metrics updated when a handler fails unexpectedly.
+     */
+    public DeliveryEngine(final NoticeQueue queue, final Executor executor, final Handler handler, final int concurrency, final DeliveryMetrics metrics) {
+        this.queue = queue;
+        this.executor = executor;
+        this.handler = handler;
+        this.concurrency = concurrency;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Queue a notice for delivery.
+     * @param notice Notice to deliver.
+     * @return Whether the notice was accepted; false if it was dropped by the queue.
+     */
+    public boolean submit(final Notice notice) {
+        if (!queue.offer(notice)) {
+            return false;
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Deliver queued notices on the calling thread until the queue is empty or the deadline passes, alongside any drain tasks on the executor. Used to empty the
+     * queue on shutdown, when the executor may already have stopped.
+     * @param deadlineNanos Value of {@linkplain System#nanoTime()} after which no more notices are taken.
+     * @return Number of notices delivered.
+     */
+    public int deliverUntil(final long deadlineNanos) {
+        int delivered = 0;
+        Notice notice;
+        while (System.nanoTime() - deadlineNanos < 0 && (notice = queue.poll()) != null) {
+            delivering.incrementAndGet();
+            deliver(notice);
+            delivered++;
+        }
+        return delivered;
+    }
+
+    /**
+     * Number of notices that have been taken off the queue and are being handled.
+     * @return Number of notices being delivered.
+     */
+    public int getDelivering() {
+        return delivering.get();
+    }
+
+    public NoticeQueue getQueue() {
+        return queue;
+    }
+
+    private void scheduleDrain() {
+        while (true) {
+            final int active = activeDrains.get();
+            if (active >= concurrency) {
+                return;
+            }
+            if (activeDrains.compareAndSet(active, active + 1)) {
+                break;
+            }
+        }
+
+        try {
+            executor.execute(drain);
+        } catch (final RejectedExecutionException e) {
+            activeDrains.decrementAndGet();
+            LOG.log(Level.WARNING, "Executor rejected delivery of Honeybadger notices, they will be retried on the next notification", e);
+        }
+    }
+
+    private void drain() {
+        try {
+            final Notice[] batch = new Notice[BATCH_SIZE];
+            int count;
+            while ((count = queue.drainTo(batch)) > 0) {
+                delivering.addAndGet(count);
+                for (int i = 0; i < count; i++) {
+                    final Notice notice = batch[i];
+                    batch[i] = null;
+                    deliver(notice);
+                }
+            }
+        } finally {
+            activeDrains.decrementAndGet();
+        }
+
+        // A notice may have been queued after the last poll but before this drain was marked as finished
+        if (!queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private void deliver(final Notice notice) {
+        try {
+            handler.deliver(notice);
+        } catch (final RuntimeException e) {
+            LOG.log(Level.SEVERE, "Unexpected failure while delivering notice to Honeybadger", e);
+            metrics.getFailed().increment();
+            DeliveryTracker.completeIfTracked(notice.getTracker(), DeliveryOutcome.FAILED, -1);
+        } finally {
+            delivering.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.DeliveryListener;
+import com.notonthehighstreet.ratel.DeliveryOutcome;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Carries a notice's outcome back to whoever submitted it. Only notices submitted for a result have one, so that notices sent and forgotten about cost nothing
+ * extra. The first outcome wins; later ones are ignored.
+ */
+public class DeliveryTracker {
+
+    private static final Logger LOG = Logger.getLogger(DeliveryTracker.class.getName());
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private List<DeliveryListener> listeners;
+    private volatile DeliveryOutcome outcome;
+    private volatile int statusCode = -1;
+
+    /**
+     * Complete a tracker, if there is one.
+     * @param tracker Tracker of the notice, or null if nobody is waiting for its outcome.
+     * @param outcome What happened to the notice.
+     * @param statusCode HTTP status code of the last response from Honeybadger, or -1 if there was none.
+     */
+    public static void completeIfTracked(@Nullable final DeliveryTracker tracker, final DeliveryOutcome outcome, final int statusCode) {
+        if (tracker != null) {
+            tracker.complete(outcome, statusCode);
+        }
+    }
+
+    /**
+     * Record what happened to the notice, waking anybody waiting and calling the listeners on this thread.
+     * @param outcome What happened to the notice.
+     * @param statusCode HTTP status code of the last response from Honeybadger, or -1 if there was none.
+     * @return False if the tracker had already completed.
+     */
+    public boolean complete(final DeliveryOutcome outcome, final int statusCode) {
+        final List<DeliveryListener> toCall;
+        synchronized (this) {
+            if (this.outcome != null) {
+                return false;
+            }
+            this.statusCode = statusCode;
+            this.outcome = outcome;
+            toCall = listeners;
+            listeners = null;
+        }
+        done.countDown();
+
+        if (toCall != null) {
+            for (final DeliveryListener listener : toCall) {
+                call(listener, outcome, statusCode);
+            }
+        }
+        return true;
+    }
+
+    public void addListener(final DeliveryListener listener) {
+        synchronized (this) {
+            if (outcome == null) {
+                if (listeners == null) {
+                    listeners = new ArrayList<DeliveryListener>(1);
+                }
+                listeners.add(listener);
+                return;
+            }
+        }
+        call(listener, outcome, statusCode);
+    }
+
+    public boolean isDone() {
+        return outcome != null;
+    }
+
+    /**
+     * @return Outcome of the notice, or null if it has not completed.
+     */
+    @CheckForNull
+    public DeliveryOutcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return HTTP status code of the last response from Honeybadger, or -1 if there was none or the notice has not completed.
+     */
+    public int getStatusCode() {
+        return outcome == null ? -1 : statusCode;
+    }
+
+    /**
+     * Wait for the notice to complete.
+     * @return Outcome of the notice.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public DeliveryOutcome await() throws InterruptedException {
+        done.await();
+        return outcome;
+    }
+
+    /**
+     * Wait for the notice to complete, giving up after a timeout.
+     * @param timeout Longest time to wait.
+     * @param unit Unit of the timeout.
+     * @return Outcome of the notice, or null if it did not complete in time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    @CheckForNull
+    public DeliveryOutcome await(final long timeout, final TimeUnit unit) throws InterruptedException {
+        done.await(timeout, unit);
+        return outcome;
+    }
+
+    private static void call(final DeliveryListener listener, final DeliveryOutcome outcome, final int statusCode) {
+        try {
+            listener.completed(outcome, statusCode);
+        } catch (final RuntimeException e) {
+            LOG.log(Level.WARNING, "Honeybadger delivery listener failed", e);
+        }
+    }
+}
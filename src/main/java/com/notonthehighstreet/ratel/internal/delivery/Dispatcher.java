@@ -0,0 +1,357 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.CircuitBreakerFallback;
+import com.notonthehighstreet.ratel.DeliveryOutcome;
+import com.notonthehighstreet.ratel.internal.metrics.DeliveryMetrics;
+import com.notonthehighstreet.ratel.internal.utility.ConfigurationSnapshot;
+import com.notonthehighstreet.ratel.transport.Transport;
+import com.notonthehighstreet.ratel.transport.TransportCallback;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends serialized notices to Honeybadger through a {@linkplain Transport} and deals with the outcome. Notices that fail because Honeybadger could not be reached or
+ * asked to be called back later are tried again after a {@linkplain Backoff} delay, honouring any Retry-After header. Waiting happens on the scheduler rather than
+ * in a delivery thread, and the retry itself is handed back to the executor. Once the attempts run out the notice is written to the {@linkplain NoticeSpool}, if
+ * there is one, so it can be replayed once Honeybadger recovers.
+ * <p>
+ * Every call goes through a {@linkplain CircuitBreaker}. While it is open notices are handed to the {@linkplain CircuitBreakerFallback} straight away instead. The
+ * breaker is told the outcome of each request by a {@linkplain CircuitBreakerTransport} beneath the transport given here, so that a batch of notices counts once.
+ */
+public class Dispatcher {
+
+    private static final Logger LOG = Logger.getLogger(Dispatcher.class.getName());
+
+    private final AtomicReference<ConfigurationSnapshot> configuration;
+    private final Transport transport;
+    private final NoticeSpool spool;
+    private final Backoff backoff;
+    private final int maxAttempts;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+    private final CircuitBreaker breaker;
+    private final CircuitBreakerFallback fallback;
+    private final DeliveryMetrics metrics;
+    private final AtomicLong rejected = new AtomicLong();
+    private final Set<Attempt> waiting = Collections.newSetFromMap(new ConcurrentHashMap<Attempt, Boolean>());
+    private volatile boolean closed;
+
+    /**
+     * @param configuration Current configuration, giving the URL and headers to send notices with when none is given for the notice. May be replaced at any time.
+     * @param transport Transport used to send notices, which should tell the circuit breaker the outcome of each request; see {@linkplain CircuitBreakerTransport}.
+     * @param spool Spool that notices are written to once they have run out of attempts.
+     * @param backoff Delay between attempts.
+     * @param maxAttempts Number of times a notice is sent before giving up; 1 means it is never retried.
+     * @param scheduler Scheduler used to wait before retrying.
+     * @param executor Executor that retries are sent on.
+     * @param breaker Circuit breaker that every call goes through.
+     * @param fallback What happens to notices while the circuit breaker is open.
+     * @param metrics Metrics updated with the outcome of each request.
+     */
+    public Dispatcher(final AtomicReference<ConfigurationSnapshot> configuration, final Transport transport, @Nullable final NoticeSpool spool,
+                      final Backoff backoff, final int maxAttempts, final ScheduledExecutorService scheduler, final Executor executor, final CircuitBreaker breaker,
+                      final CircuitBreakerFallback fallback, final DeliveryMetrics metrics) {
+        this.configuration = configuration;
+        this.transport = transport;
+        this.spool = spool;
+        this.backoff = backoff;
+        this.maxAttempts = maxAttempts;
+        this.scheduler = scheduler;
+        this.executor = executor;
+        this.breaker = breaker;
+        this.fallback = fallback;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Send a notice, retrying and then spooling it if it fails for a reason that may go away.
+     * @param body Serialized notice.
+     */
+    public void dispatch(final byte[] body) {
+        dispatch(body, null);
+    }
+
+    /**
+     * Send a notice, retrying and then spooling it if it fails for a reason that may go away.
+     * @param body Serialized notice.
+     * @param tracker Tracker to complete with the outcome, or null if nobody is waiting for it.
+     */
+    public void dispatch(final byte[] body, @Nullable final DeliveryTracker tracker) {
+        dispatch(body, configuration.get(), tracker);
+    }
+
+    /**
+     * Send a notice, retrying and then spooling it if it fails for a reason that may go away. Every attempt uses the given configuration, so the URL and key match
+     * the ones the notice was serialized with even if the configuration is reloaded in the meantime.
+     * @param body Serialized notice.
+     * @param snapshot Configuration giving the URL and headers to send the notice with.
+     * @param tracker Tracker to complete with the outcome, or null if nobody is waiting for it.
+     */
+    public void dispatch(final byte[] body, final ConfigurationSnapshot snapshot, @Nullable final DeliveryTracker tracker) {
+        attempt(new Attempt(body, snapshot, 1, tracker));
+    }
+
+    /**
+     * Make a single attempt to send a notice, leaving the outcome entirely to the callback. Fails straight away if the circuit breaker is open.
+     * @param body Serialized notice.
+     * @param callback Told the outcome of the attempt.
+     */
+    public void send(final byte[] body, final TransportCallback callback) {
+        if (!breaker.allow()) {
+            callback.failed(new IOException("Honeybadger circuit breaker is open"));
+            return;
+        }
+        transmit(body, configuration.get(), new TransportCallback() {
+            @Override
+            public void completed(final int statusCode, @Nullable final String retryAfter) {
+                if (isSuccess(statusCode)) {
+                    metrics.getSent().increment();
+                }
+                callback.completed(statusCode, retryAfter);
+            }
+
+            @Override
+            public void failed(final IOException e) {
+                callback.failed(e);
+            }
+        });
+    }
+
+    /**
+     * Number of notices that were not sent because the circuit breaker was open.
+     * @return Number of rejected notices.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Number of notices waiting on the scheduler to be tried again.
+     * @return Number of notices waiting to retry.
+     */
+    public int getWaiting() {
+        return waiting.size();
+    }
+
+    /**
+     * Stop retrying. Notices that fail from now on are given up on straight away, and notices already waiting to be tried again are handed back to the caller.
+     * Their trackers are completed as {@linkplain DeliveryOutcome#ABANDONED}.
+     * @return Bodies of the notices that were waiting to be tried again.
+     */
+    public List<byte[]> close() {
+        closed = true;
+        final List<byte[]> bodies = new ArrayList<byte[]>();
+        for (final Attempt attempt : waiting) {
+            // The scheduled retry only goes ahead if it removes itself first
+            if (waiting.remove(attempt)) {
+                bodies.add(attempt.body);
+                DeliveryTracker.completeIfTracked(attempt.tracker, DeliveryOutcome.ABANDONED, -1);
+            }
+        }
+        return bodies;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    /**
+     * Whether a response means the notice was accepted.
+     * @param statusCode HTTP status code of the response.
+     * @return True for any 2xx response.
+     */
+    public static boolean isSuccess(final int statusCode) {
+        return statusCode >= 200 && statusCode <= 299;
+    }
+
+    /**
+     * Whether a failed response is worth trying again later. Honeybadger being overloaded or unavailable is; the notice itself being rejected is not.
+     * @param statusCode HTTP status code of the response.
+     * @return True for 429 and any 5xx response.
+     */
+    public static boolean isTransientFailure(final int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    private void attempt(final Attempt attempt) {
+        if (breaker.allow()) {
+            transmit(attempt.body, attempt.snapshot, attempt);
+        } else {
+            reject(attempt.body);
+            DeliveryTracker.completeIfTracked(attempt.tracker, DeliveryOutcome.CIRCUIT_OPEN, -1);
+        }
+    }
+
+    private void transmit(final byte[] body, final ConfigurationSnapshot snapshot, final TransportCallback callback) {
+        final long start = System.nanoTime();
+        metrics.getInFlight().increment();
+        final TransportCallback measured = new TransportCallback() {
+            @Override
+            public void completed(final int statusCode, @Nullable final String retryAfter) {
+                finished(start);
+                callback.completed(statusCode, retryAfter);
+            }
+
+            @Override
+            public void failed(final IOException e) {
+                finished(start);
+                callback.failed(e);
+            }
+        };
+        try {
+            transport.send(snapshot.getUrl(), snapshot.getHeaders(), body, measured);
+        } catch (final RuntimeException e) {
+            // Treated like any other failure, otherwise the request would stay in flight and a half-open circuit breaker would never close again. The request
+            // never reached a CircuitBreakerTransport, so the breaker is told here.
+            breaker.onFailure();
+            measured.failed(new IOException("Honeybadger transport failed unexpectedly", e));
+        }
+    }
+
+    private void finished(final long start) {
+        metrics.getInFlight().decrement();
+        metrics.getRoundTrip().record(System.nanoTime() - start);
+    }
+
+    private void reject(final byte[] body) {
+        rejected.incrementAndGet();
+        if (fallback == CircuitBreakerFallback.SPOOL && spool != null && spool.append(body)) {
+            return;
+        }
+        if (fallback != CircuitBreakerFallback.COUNT) {
+            // The breaker warns once when it opens, so a long outage does not flood the log
+            LOG.log(Level.FINE, "Honeybadger circuit breaker is open, dropping notice");
+        }
+    }
+
+    private class Attempt implements TransportCallback, Runnable {
+        private final byte[] body;
+        private final ConfigurationSnapshot snapshot;
+        private final int attempt;
+        private final DeliveryTracker tracker;
+
+        Attempt(final byte[] body, final ConfigurationSnapshot snapshot, final int attempt, @Nullable final DeliveryTracker tracker) {
+            this.body = body;
+            this.snapshot = snapshot;
+            this.attempt = attempt;
+            this.tracker = tracker;
+        }
+
+        @Override
+        public void completed(final int statusCode, @Nullable final String retryAfter) {
+            if (isSuccess(statusCode)) {
+                metrics.getSent().increment();
+                DeliveryTracker.completeIfTracked(tracker, DeliveryOutcome.DELIVERED, statusCode);
+                return;
+            }
+            if (!isTransientFailure(statusCode)) {
+                metrics.getFailed().increment();
+                LOG.log(Level.SEVERE, "Call to Honeybadger failed with code " + statusCode);
+                DeliveryTracker.completeIfTracked(tracker, DeliveryOutcome.REJECTED, statusCode);
+                return;
+            }
+
+            final long retryAfterMillis = Backoff.parseRetryAfter(retryAfter, System.currentTimeMillis());
+            if (!retry(retryAfterMillis)) {
+                giveUp("Call to Honeybadger failed with code " + statusCode, statusCode, null);
+            }
+        }
+
+        @Override
+        public void failed(final IOException e) {
+            if (!retry(-1)) {
+                giveUp("Failure occurred while trying to talk to Honeybadger", -1, e);
+            }
+        }
+
+        /**
+         * Runs on the scheduler once the delay is over, and hands the retry to the executor so that the scheduler thread is never held up sending.
+         */
+        @Override
+        public void run() {
+            if (!waiting.remove(this)) {
+                return;
+            }
+            final Attempt next = new Attempt(body, snapshot, attempt + 1, tracker);
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        attempt(next);
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                giveUp("Executor rejected retry of notice to Honeybadger", -1, e);
+            }
+        }
+
+        private void giveUp(final String message, final int statusCode, @Nullable final Exception e) {
+            metrics.getFailed().increment();
+            if (spool != null && spool.append(body)) {
+                LOG.log(Level.SEVERE, message + ", notice has been spooled to be sent later", e);
+                DeliveryTracker.completeIfTracked(tracker, DeliveryOutcome.SPOOLED, statusCode);
+            } else {
+                LOG.log(Level.SEVERE, message, e);
+                DeliveryTracker.completeIfTracked(tracker, DeliveryOutcome.FAILED, statusCode);
+            }
+        }
+
+        private boolean retry(final long retryAfterMillis) {
+            if (closed || attempt >= maxAttempts || retryAfterMillis > backoff.getMaxDelayMillis()) {
+                return false;
+            }
+
+            final long delay = retryAfterMillis >= 0 ? backoff.delayMillisAfter(retryAfterMillis) : backoff.delayMillis(attempt);
+            waiting.add(this);
+            try {
+                scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException e) {
+                waiting.remove(this);
+                return false;
+            }
+            metrics.getRetried().increment();
+            LOG.log(Level.FINE, "Call to Honeybadger failed, retrying in " + delay + "ms");
+            return true;
+        }
+    }
+}
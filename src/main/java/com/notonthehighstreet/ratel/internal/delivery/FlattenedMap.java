@@ -0,0 +1,115 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only map over keys and values held alternately in an array, as kept by {@linkplain RequestSnapshot}, so that a notice can be built from a snapshot without
+ * copying everything into a {@linkplain java.util.HashMap} first. Lookups are linear, which is fine for the handful of entries a request has. Each key must appear
+ * only once, which {@linkplain RequestSnapshot.Builder} makes sure of by replacing the value of a key added again.
+ */
+final class FlattenedMap extends AbstractMap<String, String> {
+
+    private final String[] flattened;
+
+    FlattenedMap(final String[] flattened) {
+        this.flattened = flattened;
+    }
+
+    @Override
+    public int size() {
+        return flattened.length / 2;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return flattened.length == 0;
+    }
+
+    @Override
+    public String get(final Object key) {
+        for (int i = 0; i < flattened.length; i += 2) {
+            if (flattened[i] == null ? key == null : flattened[i].equals(key)) {
+                return flattened[i + 1];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        for (int i = 0; i < flattened.length; i += 2) {
+            if (flattened[i] == null ? key == null : flattened[i].equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new Iterator<Map.Entry<String, String>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < flattened.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        if (next >= flattened.length) {
+                            throw new NoSuchElementException();
+                        }
+                        final Map.Entry<String, String> entry = new SimpleImmutableEntry<String, String>(flattened[next], flattened[next + 1]);
+                        next += 2;
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return FlattenedMap.this.size();
+            }
+        };
+    }
+}
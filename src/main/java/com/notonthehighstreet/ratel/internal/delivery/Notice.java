@@ -0,0 +1,213 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.model.BacktraceLimits;
+import com.notonthehighstreet.ratel.internal.model.Request;
+import com.notonthehighstreet.ratel.internal.model.Server;
+import com.notonthehighstreet.ratel.internal.utility.ConfigurationSnapshot;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A single notification waiting to be sent to Honeybadger. A notice is either complete, or deferred: holding only the exception and a {@linkplain RequestSnapshot},
+ * with the server and request details still to be worked out on the delivery thread.
+ */
+public class Notice {
+
+    private static final int OVERHEAD_BYTES = 512;
+    private static final int BYTES_PER_FRAME = 96;
+    // Looking at the real stack trace would make the JVM build it, which is the work a deferred notice is trying to avoid
+    private static final int ASSUMED_FRAMES = 128;
+    private static final int MAX_CAUSES = BacktraceLimits.DEFAULT.getMaxChainLength();
+
+    private final Throwable throwable;
+    private final Server server;
+    private final Request request;
+    private final RequestSnapshot snapshot;
+    private final int estimatedSize;
+    private DeliveryTracker tracker;
+    private ConfigurationSnapshot configuration;
+
+    public Notice(final Throwable throwable, final Server server, final Request request) {
+        this.throwable = throwable;
+        this.server = server;
+        this.request = request;
+        this.snapshot = null;
+        this.estimatedSize = estimateSize(throwable, request);
+    }
+
+    /**
+     * Create a deferred notice.
+     * @param throwable Exception that occurred.
+     * @param snapshot Details of the request, to be turned into a complete notice on the delivery thread.
+     */
+    public Notice(final Throwable throwable, final RequestSnapshot snapshot) {
+        this.throwable = throwable;
+        this.server = null;
+        this.request = null;
+        this.snapshot = snapshot;
+        this.estimatedSize = estimateSize(throwable, snapshot);
+    }
+
+    public Throwable getThrowable() {
+        return throwable;
+    }
+
+    /**
+     * @return Server details, or null if this notice is deferred.
+     */
+    @CheckForNull
+    public Server getServer() {
+        return server;
+    }
+
+    /**
+     * @return Request details, or null if this notice is deferred.
+     */
+    @CheckForNull
+    public Request getRequest() {
+        return request;
+    }
+
+    /**
+     * @return Snapshot to build the notice from, or null if this notice is already complete.
+     */
+    @CheckForNull
+    public RequestSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public boolean isDeferred() {
+        return snapshot != null;
+    }
+
+    /**
+     * @return Tracker waiting for the outcome of this notice, or null if nobody is waiting.
+     */
+    @CheckForNull
+    public DeliveryTracker getTracker() {
+        return tracker;
+    }
+
+    /**
+     * Follow this notice through to its outcome. Must be set before the notice is queued; copies made with {@linkplain #withContext} are not tracked.
+     * @param tracker Tracker to complete with the outcome.
+     */
+    public void setTracker(@Nullable final DeliveryTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    /**
+     * @return Configuration that was current when this notice was submitted, or null if it was not set.
+     */
+    @CheckForNull
+    public ConfigurationSnapshot getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Use the given configuration for everything done with this notice, from building it to sending it, so that a reload part way through cannot mix old and new
+     * values. Must be set before the notice is queued.
+     * @param configuration Configuration that was current when the notice was submitted.
+     */
+    public void setConfiguration(@Nullable final ConfigurationSnapshot configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Rough size of this notice once it has been turned into JSON. This is used to bound the memory held by queued notices and so errs on the side of overestimating.
+     * @return Estimated size of the notice in bytes.
+     */
+    public int getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    /**
+     * Copy this notice with an additional entry in the context of the request.
+     * @param key Context key.
+     * @param value Context value.
+     * @return New notice that shares everything apart from the request context.
+     */
+    public Notice withContext(final String key, final String value) {
+        final Map<String, String> context = request.getContext() == null ? new HashMap<String, String>() : new HashMap<String, String>(request.getContext());
+        context.put(key, value);
+
+        final Request copy = new Request();
+        copy.setUrl(request.getUrl());
+        copy.setComponent(request.getComponent());
+        copy.setAction(request.getAction());
+        copy.setParams(request.getParams());
+        copy.setSession(request.getSession());
+        copy.setCgiData(request.getCgiData());
+        copy.setContext(context);
+        final Notice notice = new Notice(throwable, server, copy);
+        notice.setConfiguration(configuration);
+        return notice;
+    }
+
+    private static int estimateSize(final Throwable throwable, final Request request) {
+        long size = OVERHEAD_BYTES + length(request.getUrl());
+        size += causeBytes(throwable, throwable.getStackTrace().length);
+        size += length(request.getParams()) + length(request.getSession()) + length(request.getContext()) + length(request.getCgiData());
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static int estimateSize(final Throwable throwable, final RequestSnapshot snapshot) {
+        final long size = OVERHEAD_BYTES + snapshot.length() + causeBytes(throwable, ASSUMED_FRAMES);
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static long causeBytes(final Throwable throwable, final int frames) {
+        long size = 0;
+        int causes = 0;
+        // Counted rather than tracking which exceptions have been seen, so that a cause chain which loops back on itself still ends
+        for (Throwable cause = throwable; cause != null && causes < MAX_CAUSES; cause = cause.getCause()) {
+            size += length(cause.getMessage()) + (long) (frames + 1) * BYTES_PER_FRAME;
+            causes++;
+        }
+        return size;
+    }
+
+    private static long length(final Map<String, String> map) {
+        if (map == null) {
+            return 0;
+        }
+        long length = 0;
+        for (final Map.Entry<String, String> e : map.entrySet()) {
+            length += length(e.getKey()) + length(e.getValue()) + 6;
+        }
+        return length;
+    }
+
+    private static int length(final String s) {
+        return s == null ? 0 : s.length();
+    }
+}
@@ -0,0 +1,65 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * Queue of notices waiting to be delivered, bounded so that a burst of exceptions cannot exhaust the heap. Any number of threads may offer notices at once.
+ */
+public interface NoticeQueue {
+
+    /**
+     * Add a notice to the end of the queue.
+     * @param notice Notice to add.
+     * @return Whether the notice was added to the queue.
+     */
+    boolean offer(Notice notice);
+
+    /**
+     * Remove the notice at the head of the queue.
+     * @return The oldest notice, or null if the queue is empty.
+     */
+    Notice poll();
+
+    /**
+     * Remove as many notices as are queued, up to the length of the batch, oldest first.
+     * @param batch Array to fill with the removed notices.
+     * @return Number of notices removed.
+     */
+    int drainTo(Notice[] batch);
+
+    boolean isEmpty();
+
+    int size();
+
+    long getBytes();
+
+    /**
+     * Total number of notices that were dropped for any reason.
+     * @return Number of dropped notices.
+     */
+    long getDropped();
+}
@@ -0,0 +1,351 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append only store on local disk for serialized notices that could not be delivered. Notices are appended to the newest segment file until it reaches the segment
+ * size, after which a new segment is started. When the spool as a whole reaches its size limit the oldest segments are deleted to make room. Segments are read back
+ * oldest first with a {@linkplain Cursor}, and are left on disk until every notice in them has been read, so notices that have been spooled survive a restart.
+ * <p>
+ * Each notice is stored as its length and a CRC32 checksum followed by its bytes. A notice that was only partly written when the process stopped fails its checksum
+ * and is treated as the end of its segment.
+ */
+public class NoticeSpool {
+
+    private static final Logger LOG = Logger.getLogger(NoticeSpool.class.getName());
+    private static final String PREFIX = "notices-";
+    private static final String SUFFIX = ".spool";
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final File directory;
+    private final long maxBytes;
+    private final long segmentBytes;
+    private final Deque<File> segments = new ArrayDeque<File>();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private long sequence;
+    private long closedBytes;
+    private FileChannel channel;
+    private long currentBytes;
+    private Cursor reading;
+    private boolean closed;
+
+    /**
+     * Open the spool in the given directory, picking up any segments left by a previous run.
+     * @param directory Directory holding the segment files. Created if it does not exist.
+     * @param maxBytes Maximum number of bytes held across all segments.
+     * @param segmentBytes Size a segment reaches before a new one is started.
+     * @throws IOException If the directory could not be created.
+     */
+    public NoticeSpool(final File directory, final long maxBytes, final long segmentBytes) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create spool directory " + directory);
+        }
+
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+
+        final File[] existing = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(final File dir, final String name) {
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }
+        });
+        if (existing == null) {
+            throw new IOException("Unable to list spool directory " + directory);
+        }
+
+        // Sequence numbers are zero padded, so name order is the order the segments were written in
+        Arrays.sort(existing);
+        for (final File segment : existing) {
+            segments.add(segment);
+            closedBytes += segment.length();
+            sequence = Math.max(sequence, sequenceOf(segment) + 1);
+        }
+    }
+
+    /**
+     * Add a notice to the end of the spool, deleting the oldest segments if there is not enough room.
+     * @param body Serialized notice.
+     * @return Whether the notice was written; false if it did not fit or could not be written.
+     */
+    public synchronized boolean append(final byte[] body) {
+        if (closed) {
+            return false;
+        }
+        final int recordBytes = RECORD_HEADER_BYTES + body.length;
+        if (recordBytes > maxBytes) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        try {
+            if (channel != null && currentBytes + recordBytes > segmentBytes) {
+                rotate();
+            }
+            while (closedBytes + currentBytes + recordBytes > maxBytes && !segments.isEmpty()) {
+                deleteOldest();
+            }
+            if (closedBytes + currentBytes + recordBytes > maxBytes) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (channel == null) {
+                channel = new FileOutputStream(new File(directory, nameOf(sequence++))).getChannel();
+            }
+
+            final CRC32 crc = new CRC32();
+            crc.update(body);
+
+            final ByteBuffer buffer = ByteBuffer.allocate(recordBytes);
+            buffer.putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            currentBytes += recordBytes;
+            return true;
+        } catch (final IOException e) {
+            LOG.log(Level.WARNING, "Unable to write notice to spool in " + directory, e);
+            dropped.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Start reading the oldest segment. Only one cursor may be open at a time, and the segment it is reading is not deleted to make room for new notices.
+     * @return Cursor over the oldest segment, or null if the spool is empty.
+     * @throws IOException If the segment could not be opened.
+     */
+    public synchronized Cursor open() throws IOException {
+        if (closed) {
+            return null;
+        }
+        if (segments.isEmpty()) {
+            if (currentBytes == 0) {
+                return null;
+            }
+            rotate();
+        }
+        reading = new Cursor(segments.poll());
+        return reading;
+    }
+
+    /**
+     * Write the segment being appended to out to disk, and close it along with any segment being read, so that no files are held open. Nothing can be appended
+     * or read afterwards. A segment that was only partly read is read again from the start when the spool is next opened.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (channel != null) {
+            try {
+                channel.force(true);
+                channel.close();
+            } catch (final IOException e) {
+                LOG.log(Level.WARNING, "Unable to close spool segment in " + directory, e);
+            }
+            channel = null;
+        }
+        if (reading != null) {
+            try {
+                reading.channel.close();
+            } catch (final IOException e) {
+                LOG.log(Level.FINE, "Unable to close spool segment " + reading.segment, e);
+            }
+            reading = null;
+        }
+    }
+
+    /**
+     * Number of bytes held across all segments, including those being read.
+     * @return Size of the spool in bytes.
+     */
+    public synchronized long getBytes() {
+        return closedBytes + currentBytes;
+    }
+
+    /**
+     * Number of notices that were lost because they did not fit in the spool or because their segment was deleted to make room.
+     * @return Number of dropped notices.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void rotate() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            segments.add(new File(directory, nameOf(sequence - 1)));
+            closedBytes += currentBytes;
+            currentBytes = 0;
+        }
+    }
+
+    private void deleteOldest() {
+        final File oldest = segments.poll();
+        final long length = oldest.length();
+        dropped.addAndGet(countRecords(oldest));
+        if (!oldest.delete()) {
+            LOG.log(Level.WARNING, "Unable to delete spool segment " + oldest);
+        }
+        closedBytes -= length;
+    }
+
+    private synchronized void release(final Cursor cursor) {
+        if (reading == cursor) {
+            reading = null;
+        }
+        final File segment = cursor.segment;
+        final long length = segment.length();
+        if (!segment.delete()) {
+            LOG.log(Level.WARNING, "Unable to delete spool segment " + segment);
+        }
+        closedBytes -= length;
+    }
+
+    private long countRecords(final File segment) {
+        long count = 0;
+        try {
+            final Cursor cursor = new Cursor(segment);
+            try {
+                while (cursor.read() != null) {
+                    cursor.skip();
+                    count++;
+                }
+            } finally {
+                cursor.channel.close();
+            }
+        } catch (final IOException e) {
+            LOG.log(Level.FINE, "Unable to count notices in spool segment " + segment, e);
+        }
+        return count;
+    }
+
+    private static String nameOf(final long sequence) {
+        return String.format("%s%019d%s", PREFIX, sequence, SUFFIX);
+    }
+
+    private static long sequenceOf(final File segment) {
+        final String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the notices in a single segment in the order they were written.
+     */
+    public final class Cursor {
+        private final File segment;
+        private final FileChannel channel;
+        private long position;
+        private int lastRecordBytes;
+
+        private Cursor(final File segment) throws IOException {
+            this.segment = segment;
+            this.channel = new RandomAccessFile(segment, "r").getChannel();
+        }
+
+        /**
+         * Read the notice at the current position without moving past it.
+         * @return Serialized notice, or null if there are no more complete notices in the segment.
+         * @throws IOException If the segment could not be read.
+         */
+        public byte[] read() throws IOException {
+            final long remaining = channel.size() - position;
+            if (remaining < RECORD_HEADER_BYTES) {
+                return null;
+            }
+
+            final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            readFully(header, position);
+            final int length = header.getInt(0);
+            final int checksum = header.getInt(4);
+            if (length < 0 || length > remaining - RECORD_HEADER_BYTES) {
+                return null;
+            }
+
+            final ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(body, position + RECORD_HEADER_BYTES);
+
+            final CRC32 crc = new CRC32();
+            crc.update(body.array());
+            if ((int) crc.getValue() != checksum) {
+                return null;
+            }
+
+            lastRecordBytes = RECORD_HEADER_BYTES + length;
+            return body.array();
+        }
+
+        /**
+         * Move past the notice returned by the last call to {@linkplain #read()}.
+         */
+        public void skip() {
+            position += lastRecordBytes;
+            lastRecordBytes = 0;
+        }
+
+        /**
+         * Close the cursor and delete its segment once every notice in it has been dealt with.
+         * @throws IOException If the segment could not be closed.
+         */
+        public void delete() throws IOException {
+            channel.close();
+            release(this);
+        }
+
+        private void readFully(final ByteBuffer buffer, final long offset) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of spool segment " + segment);
+                }
+            }
+        }
+    }
+}
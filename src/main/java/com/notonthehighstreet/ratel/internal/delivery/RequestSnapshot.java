@@ -0,0 +1,380 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Copy of the details passed to {@linkplain com.notonthehighstreet.ratel.Honeybadger#notify} taken on the calling thread, so that turning them into a notice can
+ * wait until it reaches a delivery thread. Maps are flattened into arrays, which is about as cheap a copy as can be taken while still being safe against the caller
+ * reusing or changing them once notify has returned. Parameter value arrays are shared rather than copied.
+ */
+public final class RequestSnapshot {
+
+    private static final String[] NO_STRINGS = new String[0];
+    private static final String[][] NO_VALUES = new String[0][];
+
+    private final String url;
+    private final String controller;
+    private final String action;
+    private final String method;
+    private final String userAgent;
+    private final String remoteAddress;
+    private final String[] parameterNames;
+    private final String[][] parameterValues;
+    private final String[] session;
+    private final String[] cookies;
+    private final String[] context;
+
+    public RequestSnapshot(final String url, @Nullable final String controller, @Nullable final String action, @Nullable final String method,
+                           @Nullable final String userAgent, @Nullable final String remoteAddress, @Nullable final Map<String, String[]> parameters,
+                           final Map<String, String> session, final Map<String, String> cookies, final Map<String, String> context) {
+        this.url = url;
+        this.controller = controller;
+        this.action = action;
+        this.method = method;
+        this.userAgent = userAgent;
+        this.remoteAddress = remoteAddress;
+
+        if (parameters == null || parameters.isEmpty()) {
+            this.parameterNames = NO_STRINGS;
+            this.parameterValues = NO_VALUES;
+        } else {
+            this.parameterNames = new String[parameters.size()];
+            this.parameterValues = new String[parameters.size()][];
+            int i = 0;
+            for (final Map.Entry<String, String[]> e : parameters.entrySet()) {
+                parameterNames[i] = e.getKey();
+                parameterValues[i++] = e.getValue();
+            }
+        }
+
+        this.session = flatten(session);
+        this.cookies = flatten(cookies);
+        this.context = flatten(context);
+    }
+
+    private RequestSnapshot(final Builder builder) {
+        this.url = builder.url;
+        this.controller = builder.controller;
+        this.action = builder.action;
+        this.method = builder.method;
+        this.userAgent = builder.userAgent;
+        this.remoteAddress = builder.remoteAddress;
+        this.parameterNames = copy(builder.parameterNames, builder.parameterCount);
+        this.parameterValues = builder.parameterCount == 0 ? NO_VALUES : Arrays.copyOf(builder.parameterValues, builder.parameterCount);
+        this.session = copy(builder.session, builder.sessionLength);
+        this.cookies = copy(builder.cookies, builder.cookiesLength);
+        this.context = copy(builder.context, builder.contextLength);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    @CheckForNull
+    public String getController() {
+        return controller;
+    }
+
+    @CheckForNull
+    public String getAction() {
+        return action;
+    }
+
+    @CheckForNull
+    public String getMethod() {
+        return method;
+    }
+
+    @CheckForNull
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    @CheckForNull
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * @return Parameters with the values of each joined by commas, as they are sent to Honeybadger.
+     */
+    public Map<String, String> getJoinedParameters() {
+        if (parameterNames.length == 0) {
+            return Collections.emptyMap();
+        }
+        final String[] joined = new String[parameterNames.length * 2];
+        for (int i = 0; i < parameterNames.length; i++) {
+            joined[i * 2] = parameterNames[i];
+            joined[i * 2 + 1] = join(parameterValues[i]);
+        }
+        return new FlattenedMap(joined);
+    }
+
+    /**
+     * @return Read-only view of the session details.
+     */
+    public Map<String, String> getSession() {
+        return view(session);
+    }
+
+    /**
+     * @return Read-only view of the context.
+     */
+    public Map<String, String> getContext() {
+        return view(context);
+    }
+
+    /**
+     * @return Cookies in the form of a Cookie header, or null if there are none.
+     */
+    @CheckForNull
+    public String getCookieHeader() {
+        if (cookies.length == 0) {
+            return null;
+        }
+        final StringBuilder header = new StringBuilder(cookies.length * 16);
+        for (int i = 0; i < cookies.length; i += 2) {
+            if (i > 0) {
+                header.append("; ");
+            }
+            header.append(cookies[i]).append('=').append(cookies[i + 1]);
+        }
+        return header.toString();
+    }
+
+    /**
+     * Rough number of characters in the snapshot, for estimating the size of the notice.
+     * @return Number of characters held by the snapshot.
+     */
+    public long length() {
+        long length = length(url) + length(controller) + length(action) + length(method) + length(userAgent) + length(remoteAddress);
+        for (int i = 0; i < parameterNames.length; i++) {
+            length += length(parameterNames[i]) + 6;
+            if (parameterValues[i] != null) {
+                for (final String value : parameterValues[i]) {
+                    length += length(value) + 1;
+                }
+            }
+        }
+        return length + length(session) + length(cookies) + length(context);
+    }
+
+    private static String[] copy(final String[] strings, final int length) {
+        return length == 0 ? NO_STRINGS : Arrays.copyOf(strings, length);
+    }
+
+    private static String[] flatten(final Map<String, String> map) {
+        if (map == null || map.isEmpty()) {
+            return NO_STRINGS;
+        }
+        final String[] flattened = new String[map.size() * 2];
+        int i = 0;
+        for (final Map.Entry<String, String> e : map.entrySet()) {
+            flattened[i++] = e.getKey();
+            flattened[i++] = e.getValue();
+        }
+        return flattened;
+    }
+
+    private static Map<String, String> view(final String[] flattened) {
+        if (flattened.length == 0) {
+            return Collections.emptyMap();
+        }
+        return new FlattenedMap(flattened);
+    }
+
+    private static String join(@Nullable final String[] values) {
+        if (values == null || values.length == 0) {
+            return "";
+        }
+        if (values.length == 1) {
+            return String.valueOf(values[0]);
+        }
+        final StringBuilder joined = new StringBuilder(values.length * 16);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                joined.append(',');
+            }
+            joined.append(values[i]);
+        }
+        return joined.toString();
+    }
+
+    private static long length(final String[] strings) {
+        long length = 0;
+        for (final String s : strings) {
+            length += length(s) + 3;
+        }
+        return length;
+    }
+
+    private static int length(final String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    /**
+     * Collects the details of a request field by field into arrays that are kept and reused after each snapshot is taken, so that filling it in does not allocate
+     * once the arrays have grown to fit. Adding a name that is already there replaces its value, as putting it into a map would. Not thread safe.
+     */
+    public static final class Builder {
+
+        private static final int INITIAL_CAPACITY = 8;
+
+        private String url;
+        private String controller;
+        private String action;
+        private String method;
+        private String userAgent;
+        private String remoteAddress;
+        private String[] parameterNames = new String[INITIAL_CAPACITY];
+        private String[][] parameterValues = new String[INITIAL_CAPACITY][];
+        private int parameterCount;
+        private String[] session = new String[INITIAL_CAPACITY];
+        private int sessionLength;
+        private String[] cookies = new String[INITIAL_CAPACITY];
+        private int cookiesLength;
+        private String[] context = new String[INITIAL_CAPACITY];
+        private int contextLength;
+
+        public void setUrl(final String url) {
+            this.url = url;
+        }
+
+        public void setController(@Nullable final String controller) {
+            this.controller = controller;
+        }
+
+        public void setAction(@Nullable final String action) {
+            this.action = action;
+        }
+
+        public void setMethod(@Nullable final String method) {
+            this.method = method;
+        }
+
+        public void setUserAgent(@Nullable final String userAgent) {
+            this.userAgent = userAgent;
+        }
+
+        public void setRemoteAddress(@Nullable final String remoteAddress) {
+            this.remoteAddress = remoteAddress;
+        }
+
+        /**
+         * Add a request parameter. The values array is kept rather than copied.
+         * @param name Name of the parameter.
+         * @param values Values of the parameter.
+         */
+        public void addParameter(final String name, final String[] values) {
+            for (int i = 0; i < parameterCount; i++) {
+                if (name == null ? parameterNames[i] == null : name.equals(parameterNames[i])) {
+                    parameterValues[i] = values;
+                    return;
+                }
+            }
+            if (parameterCount == parameterNames.length) {
+                parameterNames = Arrays.copyOf(parameterNames, parameterCount * 2);
+                parameterValues = Arrays.copyOf(parameterValues, parameterCount * 2);
+            }
+            parameterNames[parameterCount] = name;
+            parameterValues[parameterCount++] = values;
+        }
+
+        public void addSession(final String name, final String value) {
+            if (!replace(session, sessionLength, name, value)) {
+                session = append(session, sessionLength, name, value);
+                sessionLength += 2;
+            }
+        }
+
+        public void addCookie(final String name, final String value) {
+            if (!replace(cookies, cookiesLength, name, value)) {
+                cookies = append(cookies, cookiesLength, name, value);
+                cookiesLength += 2;
+            }
+        }
+
+        public void addContext(final String name, final String value) {
+            if (!replace(context, contextLength, name, value)) {
+                context = append(context, contextLength, name, value);
+                contextLength += 2;
+            }
+        }
+
+        /**
+         * Take a snapshot of the details collected so far.
+         * @return Snapshot holding its own copy of the details.
+         */
+        public RequestSnapshot build() {
+            return new RequestSnapshot(this);
+        }
+
+        /**
+         * Forget all collected details, keeping the arrays for reuse.
+         */
+        public void reset() {
+            url = null;
+            controller = null;
+            action = null;
+            method = null;
+            userAgent = null;
+            remoteAddress = null;
+            Arrays.fill(parameterNames, 0, parameterCount, null);
+            Arrays.fill(parameterValues, 0, parameterCount, null);
+            parameterCount = 0;
+            Arrays.fill(session, 0, sessionLength, null);
+            sessionLength = 0;
+            Arrays.fill(cookies, 0, cookiesLength, null);
+            cookiesLength = 0;
+            Arrays.fill(context, 0, contextLength, null);
+            contextLength = 0;
+        }
+
+        private static boolean replace(final String[] flattened, final int length, final String name, final String value) {
+            for (int i = 0; i < length; i += 2) {
+                if (name == null ? flattened[i] == null : name.equals(flattened[i])) {
+                    flattened[i + 1] = value;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static String[] append(final String[] flattened, final int length, final String name, final String value) {
+            final String[] target = length + 2 > flattened.length ? Arrays.copyOf(flattened, flattened.length * 2) : flattened;
+            target[length] = name;
+            target[length + 1] = value;
+            return target;
+        }
+    }
+}
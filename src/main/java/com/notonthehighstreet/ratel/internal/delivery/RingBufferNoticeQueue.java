@@ -0,0 +1,161 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free queue of notices over a fixed array of slots, allocated up front. Offering a notice claims a slot with a single compare-and-set and does not allocate,
+ * so threads notifying at the same time do not queue behind a lock. Each slot carries a sequence number recording whether it is free for the next producer or
+ * holds a notice for the next consumer (Dmitry Vyukov's bounded queue). When the queue is full the newest notice is dropped.
+ */
+public class RingBufferNoticeQueue implements NoticeQueue {
+
+    private final int mask;
+    private final long maxBytes;
+    private final AtomicReferenceArray<Notice> slots;
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param capacity Maximum number of notices, rounded up to the next power of two.
+     * @param maxBytes Maximum total estimated size of the queued notices.
+     */
+    public RingBufferNoticeQueue(final int capacity, final long maxBytes) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30 but was " + capacity);
+        }
+        final int slotCount = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = slotCount - 1;
+        this.maxBytes = maxBytes;
+        this.slots = new AtomicReferenceArray<Notice>(slotCount);
+        this.sequences = new AtomicLongArray(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(final Notice notice) {
+        final int size = notice.getEstimatedSize();
+        if (bytes.addAndGet(size) > maxBytes) {
+            bytes.addAndGet(-size);
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        long position = tail.get();
+        while (true) {
+            final int index = (int) position & mask;
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, notice);
+                    // Publishes the notice to consumers, who read the sequence before the slot
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot still holds a notice from one lap ago
+                bytes.addAndGet(-size);
+                rejected.incrementAndGet();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    @Override
+    public Notice poll() {
+        long position = head.get();
+        while (true) {
+            final int index = (int) position & mask;
+            final long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    final Notice notice = slots.get(index);
+                    slots.lazySet(index, null);
+                    // Hands the slot back to producers for the next lap
+                    sequences.set(index, position + mask + 1);
+                    bytes.addAndGet(-notice.getEstimatedSize());
+                    return notice;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    @Override
+    public int drainTo(final Notice[] batch) {
+        int count = 0;
+        Notice notice;
+        while (count < batch.length && (notice = poll()) != null) {
+            batch[count++] = notice;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public long getDropped() {
+        return rejected.get();
+    }
+
+    /**
+     * Number of notices the queue can hold.
+     * @return Capacity after rounding up to a power of two.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,160 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.transport.TransportCallback;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends spooled notices to Honeybadger again, oldest first and one at a time. Intended to be run periodically; each run carries on until the spool is empty or a notice
+ * fails for a reason that may go away, in which case that notice is left at the head of the spool for the next run. A notice is only removed from the spool after it has
+ * been sent, so a notice may be sent twice if the process stops part way through a replay, but is never lost.
+ */
+public class SpoolReplayer implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(SpoolReplayer.class.getName());
+
+    private static final int PENDING = 0;
+    private static final int RETURNED = 1;
+    private static final int SENT = 2;
+    private static final int FAILED = 3;
+
+    private final NoticeSpool spool;
+    private final Executor executor;
+    private final Dispatcher dispatcher;
+    private final AtomicBoolean active = new AtomicBoolean();
+
+    // Only touched by the single replay in progress, which hands over to the next step through the atomics above
+    private NoticeSpool.Cursor cursor;
+
+    private final Runnable replay = new Runnable() {
+        @Override
+        public void run() {
+            replay();
+        }
+    };
+
+    public SpoolReplayer(final NoticeSpool spool, final Executor executor, final Dispatcher dispatcher) {
+        this.spool = spool;
+        this.executor = executor;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Start a replay on the executor unless one is already in progress.
+     */
+    @Override
+    public void run() {
+        if (active.compareAndSet(false, true)) {
+            resume();
+        }
+    }
+
+    private void resume() {
+        try {
+            executor.execute(replay);
+        } catch (final RejectedExecutionException e) {
+            active.set(false);
+            LOG.log(Level.WARNING, "Executor rejected replay of spooled Honeybadger notices, it will be tried again later", e);
+        }
+    }
+
+    private void replay() {
+        try {
+            while (true) {
+                if (cursor == null) {
+                    cursor = spool.open();
+                    if (cursor == null) {
+                        active.set(false);
+                        return;
+                    }
+                }
+
+                final byte[] body = cursor.read();
+                if (body == null) {
+                    cursor.delete();
+                    cursor = null;
+                    continue;
+                }
+
+                final AtomicInteger outcome = new AtomicInteger(PENDING);
+                dispatcher.send(body, new TransportCallback() {
+                    @Override
+                    public void completed(final int statusCode, final String retryAfter) {
+                        if (!Dispatcher.isSuccess(statusCode) && !Dispatcher.isTransientFailure(statusCode)) {
+                            LOG.log(Level.SEVERE, "Call to Honeybadger failed with code " + statusCode + ", discarding spooled notice");
+                        }
+                        complete(outcome, Dispatcher.isTransientFailure(statusCode) ? FAILED : SENT);
+                    }
+
+                    @Override
+                    public void failed(final IOException e) {
+                        LOG.log(Level.FINE, "Honeybadger is still unreachable, spooled notices will be sent later", e);
+                        complete(outcome, FAILED);
+                    }
+                });
+
+                // An asynchronous transport completes later, and the callback carries the replay on from there
+                if (outcome.compareAndSet(PENDING, RETURNED) || !advance(outcome.get())) {
+                    return;
+                }
+            }
+        } catch (final IOException e) {
+            LOG.log(Level.WARNING, "Unable to read spooled Honeybadger notices", e);
+            active.set(false);
+        } catch (final RuntimeException e) {
+            active.set(false);
+            throw e;
+        }
+    }
+
+    private void complete(final AtomicInteger outcome, final int result) {
+        // Still inside the send, so the replay loop will pick up the result itself
+        if (outcome.compareAndSet(PENDING, result)) {
+            return;
+        }
+        if (advance(result)) {
+            resume();
+        }
+    }
+
+    private boolean advance(final int result) {
+        if (result == SENT) {
+            cursor.skip();
+            return true;
+        }
+        active.set(false);
+        return false;
+    }
+}
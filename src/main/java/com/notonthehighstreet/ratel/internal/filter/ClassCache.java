@@ -0,0 +1,61 @@
+package com.notonthehighstreet.ratel.internal.filter;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers a value worked out once for each exception class, so that checks made on every notification are a single map lookup. Java 6 has no
+ * {@code ClassValue}, so this is a concurrent map with a cap on the number of classes, beyond which values are worked out each time rather than held.
+ * @param <V> Type of the cached value.
+ */
+public abstract class ClassCache<V> {
+
+    private static final int MAX_CLASSES = 1000;
+
+    private final ConcurrentMap<Class<?>, V> values = new ConcurrentHashMap<Class<?>, V>();
+
+    public V get(final Class<?> type) {
+        final V value = values.get(type);
+        if (value != null) {
+            return value;
+        }
+        final V computed = compute(type);
+        if (values.size() < MAX_CLASSES) {
+            values.putIfAbsent(type, computed);
+        }
+        return computed;
+    }
+
+    /**
+     * Work out the value for a class. May be called more than once for the same class if threads race, so must not have side effects.
+     * @param type Class to work out the value for.
+     * @return Value for the class, never null.
+     */
+    protected abstract V compute(Class<?> type);
+}
@@ -0,0 +1,205 @@
+package com.notonthehighstreet.ratel.internal.filter;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.delivery.Notice;
+
+import javax.annotation.CheckForNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Folds repeated notices with the same {@linkplain Fingerprint} into a single follow-up notice. The first occurrence is always sent straight away; any repeats within the
+ * aggregation window are counted and, when the window closes, the most recent repeat is sent once with the number of repeats added to its context under {@value #OCCURRENCES}.
+ */
+public class Deduplicator {
+
+    public static final String OCCURRENCES = "occurrences";
+
+    private static final int MAX_TRACKED_FINGERPRINTS = 10000;
+
+    /**
+     * Receives the follow-up notice once a window closes.
+     */
+    public interface Sink {
+        void submit(Notice notice);
+    }
+
+    private final long windowMillis;
+    private final long maxBytes;
+    private final ScheduledExecutorService scheduler;
+    private final Sink sink;
+    private final ConcurrentMap<Long, Window> windows = new ConcurrentHashMap<Long, Window>();
+    private final AtomicLong folded = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * @param window Length of the aggregation window.
+     * @param unit Unit of the window.
+     * @param maxBytes Maximum estimated size in bytes of the notices held for follow-ups. Once reached, repeats that would need more room are sent as they occur.
+     * @param scheduler Scheduler that closes windows.
+     * @param sink Receives the follow-up notices.
+     */
+    public Deduplicator(final long window, final TimeUnit unit, final long maxBytes, final ScheduledExecutorService scheduler, final Sink sink) {
+        this.windowMillis = unit.toMillis(window);
+        this.maxBytes = maxBytes;
+        this.scheduler = scheduler;
+        this.sink = sink;
+    }
+
+    /**
+     * Decide whether a notice should be sent now.
+     * @param notice Notice that is about to be sent.
+     * @return True if the notice should be sent, false if it has been folded into an open window.
+     */
+    public boolean admit(final Notice notice) {
+        if (windowMillis <= 0) {
+            return true;
+        }
+
+        final Long fingerprint = Fingerprint.of(notice.getThrowable());
+        final Window existing = windows.get(fingerprint);
+        if (existing != null && existing.fold(notice)) {
+            folded.incrementAndGet();
+            return false;
+        }
+
+        if (windows.size() >= MAX_TRACKED_FINGERPRINTS) {
+            // Too many distinct failures to track, better to send than to grow without bound
+            return true;
+        }
+
+        final Window window = new Window();
+        final Window raced = windows.putIfAbsent(fingerprint, window);
+        if (raced != null) {
+            if (raced.fold(notice)) {
+                folded.incrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                final Notice followUp = close(fingerprint, window);
+                if (followUp != null) {
+                    sink.submit(followUp);
+                }
+            }
+        }, windowMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Number of notices that have been folded into a follow-up notice rather than sent individually.
+     * @return Number of folded notices.
+     */
+    public long getFolded() {
+        return folded.get();
+    }
+
+    /**
+     * Estimated size of the notices currently held for follow-ups.
+     * @return Size in bytes.
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Close every open window straight away rather than waiting for them to expire, as when shutting down.
+     * @return Follow-up notices for the windows that had folded any repeats.
+     */
+    public List<Notice> closeAll() {
+        final List<Notice> followUps = new ArrayList<Notice>();
+        for (final Map.Entry<Long, Window> e : windows.entrySet()) {
+            final Notice followUp = close(e.getKey(), e.getValue());
+            if (followUp != null) {
+                followUps.add(followUp);
+            }
+        }
+        return followUps;
+    }
+
+    @CheckForNull
+    private Notice close(final Long fingerprint, final Window window) {
+        windows.remove(fingerprint, window);
+
+        final Notice latest;
+        final int occurrences;
+        synchronized (window) {
+            if (window.closed) {
+                // Already closed by closeAll or the scheduled task, whichever got there first
+                return null;
+            }
+            window.closed = true;
+            latest = window.latest;
+            occurrences = window.occurrences;
+            window.latest = null;
+        }
+
+        if (latest != null) {
+            bytes.addAndGet(-latest.getEstimatedSize());
+        }
+        return latest == null ? null : latest.withContext(OCCURRENCES, Integer.toString(occurrences));
+    }
+
+    private boolean reserve(final long size) {
+        if (bytes.addAndGet(size) > maxBytes && size > 0) {
+            bytes.addAndGet(-size);
+            return false;
+        }
+        return true;
+    }
+
+    private final class Window {
+        private boolean closed;
+        private int occurrences;
+        private Notice latest;
+
+        synchronized boolean fold(final Notice notice) {
+            if (closed) {
+                return false;
+            }
+            // Each window keeps a whole notice until it closes, so they are held to a budget like the queue rather than pinning memory outside every limit
+            final int held = latest == null ? 0 : latest.getEstimatedSize();
+            if (!reserve(notice.getEstimatedSize() - held)) {
+                return false;
+            }
+            occurrences++;
+            latest = notice;
+            return true;
+        }
+    }
+}
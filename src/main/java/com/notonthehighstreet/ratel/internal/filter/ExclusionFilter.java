@@ -0,0 +1,84 @@
+package com.notonthehighstreet.ratel.internal.filter;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decides whether an exception is excluded from being sent to Honeybadger. The decision is made once for each exception class and remembered, so checking an
+ * exception is a single map lookup however many exclusions are configured.
+ */
+public class ExclusionFilter {
+
+    private final Set<String> excluded;
+    private final boolean matchHierarchy;
+
+    private final ClassCache<Boolean> decisions = new ClassCache<Boolean>() {
+        @Override
+        protected Boolean compute(final Class<?> type) {
+            return matchHierarchy ? matchesHierarchy(type) : excluded.contains(type.getName());
+        }
+    };
+
+    /**
+     * @param excluded Names of the excluded exception classes.
+     * @param matchHierarchy True if subclasses and implementations of the excluded classes and interfaces are also excluded.
+     */
+    public ExclusionFilter(final Collection<String> excluded, final boolean matchHierarchy) {
+        this.excluded = new HashSet<String>(excluded);
+        this.matchHierarchy = matchHierarchy;
+    }
+
+    /**
+     * Whether an exception is excluded.
+     * @param t Exception to check.
+     * @return True if the exception should not be sent.
+     */
+    public boolean isExcluded(final Throwable t) {
+        return !excluded.isEmpty() && decisions.get(t.getClass());
+    }
+
+    private boolean matchesHierarchy(final Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            if (excluded.contains(current.getName()) || matchesInterfaces(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesInterfaces(final Class<?> type) {
+        for (final Class<?> implemented : type.getInterfaces()) {
+            if (excluded.contains(implemented.getName()) || matchesInterfaces(implemented)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+package com.notonthehighstreet.ratel.internal.filter;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.model.Error;
+import com.notonthehighstreet.ratel.internal.model.StackTraceVisitor;
+
+/**
+ * Identifies notices that are caused by the same problem: the same exception class thrown from the same place.
+ */
+public final class Fingerprint {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Fingerprint() {
+    }
+
+    /**
+     * Compute a 64 bit FNV-1a hash of the exception class and every frame of its backtrace. The message is deliberately left out as it often contains ids or
+     * timestamps that differ between otherwise identical failures.
+     * @param e Exception to fingerprint.
+     * @return Fingerprint of the exception.
+     */
+    public static long of(final Throwable e) {
+        final Hasher hasher = new Hasher(hash(FNV_OFFSET_BASIS, e.getClass().getName()));
+        Error.walkStackTrace(e, hasher);
+        return hasher.hash;
+    }
+
+    private static long hash(long hash, final String value) {
+        if (value == null) {
+            return hash(hash, 0);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = hash(hash, value.charAt(i));
+        }
+        // Separator so that "ab" + "c" and "a" + "bc" hash differently
+        return hash(hash, 0xffff);
+    }
+
+    private static long hash(final long hash, final int value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    private static final class Hasher implements StackTraceVisitor {
+        private long hash;
+
+        private Hasher(final long hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        public void frame(final StackTraceElement element) {
+            hash = hash(hash, element.getClassName());
+            hash = hash(hash, element.getMethodName());
+            hash = hash(hash, element.getLineNumber());
+        }
+
+        @Override
+        public void cause(final Throwable cause) {
+            hash = hash(hash, cause.getClass().getName());
+        }
+
+        @Override
+        public void suppressed(final Throwable suppressed) {
+            hash = hash(hash, suppressed.getClass().getName());
+        }
+
+        @Override
+        public void circularReference(final Throwable seen) {
+            hash = hash(hash, seen.getClass().getName());
+        }
+
+        @Override
+        public void omitted(final int frames) {
+            hash = hash(hash, frames);
+        }
+
+        @Override
+        public void causesOmitted(final int causes) {
+            hash = hash(hash, causes);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.notonthehighstreet.ratel.internal.filter;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the rate at which notices are sent, both in total and for each exception class, so a runaway error loop cannot flood Honeybadger or the delivery queue.
+ */
+public class RateLimiter {
+
+    private static final int MAX_TRACKED_CLASSES = 1000;
+
+    private final TokenBucket global;
+    private final double perClassRate;
+    private final int burst;
+    private final ConcurrentMap<Class<?>, TokenBucket> perClass = new ConcurrentHashMap<Class<?>, TokenBucket>();
+    private final AtomicLong limited = new AtomicLong();
+
+    /**
+     * @param globalRate Notices per second across all exceptions, zero for no limit.
+     * @param perClassRate Notices per second for each exception class, zero for no limit.
+     * @param burst Number of notices that can be sent at once after a quiet period.
+     */
+    public RateLimiter(final double globalRate, final double perClassRate, final int burst) {
+        this.global = globalRate > 0 ? new TokenBucket(globalRate, burst) : null;
+        this.perClassRate = perClassRate;
+        this.burst = burst;
+    }
+
+    /**
+     * Take a permit to send a notice for the given exception class.
+     * @param type Class of the exception being notified.
+     * @return Whether the notice may be sent.
+     */
+    public boolean tryAcquire(final Class<?> type) {
+        return tryAcquire(type, System.nanoTime());
+    }
+
+    boolean tryAcquire(final Class<?> type, final long now) {
+        // Per class first so that a single noisy exception cannot use up the global allowance
+        final TokenBucket bucket = perClassRate > 0 ? bucketFor(type) : null;
+        if (bucket != null && !bucket.tryAcquire(now)) {
+            limited.incrementAndGet();
+            return false;
+        }
+        if (global != null && !global.tryAcquire(now)) {
+            // The notice is not sent, so its class should not be charged for it
+            if (bucket != null) {
+                bucket.release();
+            }
+            limited.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Number of notices that have been rejected for exceeding a rate limit.
+     * @return Number of rate limited notices.
+     */
+    public long getLimited() {
+        return limited.get();
+    }
+
+    private TokenBucket bucketFor(final Class<?> type) {
+        final TokenBucket bucket = perClass.get(type);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (perClass.size() >= MAX_TRACKED_CLASSES) {
+            return null;
+        }
+        final TokenBucket created = new TokenBucket(perClassRate, burst);
+        final TokenBucket raced = perClass.putIfAbsent(type, created);
+        return raced == null ? created : raced;
+    }
+}
@@ -0,0 +1,116 @@
+package com.notonthehighstreet.ratel.internal.filter;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends only a proportion of the notices for exceptions that are too common to be worth sending every time. Each exception class is given the rate of the most
+ * specific rule that matches it, a rule being either a class name or a package name, or the default rate if none does.
+ */
+public class Sampler {
+
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    private final Map<String, Double> rates;
+    private final double defaultRate;
+    private final AtomicLong sampledOut = new AtomicLong();
+
+    private final ClassCache<Double> cache = new ClassCache<Double>() {
+        @Override
+        protected Double compute(final Class<?> type) {
+            return rateFor(type.getName());
+        }
+    };
+
+    /**
+     * @param rates Proportion of notices to send, between 0 and 1, keyed by class or package name.
+     * @param defaultRate Proportion of notices to send for exceptions that no rule matches.
+     */
+    public Sampler(final Map<String, Double> rates, final double defaultRate) {
+        // Copied so that options changed after construction can't race with notices being sampled
+        this.rates = new HashMap<String, Double>(rates);
+        this.defaultRate = defaultRate;
+    }
+
+    /**
+     * Proportion of notices sent for the given exception class.
+     * @param type Class of the exception.
+     * @return Sample rate between 0 and 1.
+     */
+    public double rateFor(final Class<?> type) {
+        if (rates.isEmpty()) {
+            return defaultRate;
+        }
+        return cache.get(type);
+    }
+
+    /**
+     * Decide whether a notice is sent.
+     * @param rate Sample rate for the exception.
+     * @return True if the notice should be sent.
+     */
+    public boolean admit(final double rate) {
+        if (rate >= 1 || (rate > 0 && RANDOM.get().nextDouble() < rate)) {
+            return true;
+        }
+        sampledOut.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Number of notices that were not sent because they were sampled out.
+     * @return Number of sampled out notices.
+     */
+    public long getSampledOut() {
+        return sampledOut.get();
+    }
+
+    private double rateFor(final String className) {
+        // Walk up from the class name through each enclosing package, so the longest matching rule wins
+        String name = className;
+        while (true) {
+            final Double rate = rates.get(name);
+            if (rate != null) {
+                return rate;
+            }
+            final int dot = Math.max(name.lastIndexOf('.'), name.lastIndexOf('$'));
+            if (dot < 0) {
+                return defaultRate;
+            }
+            name = name.substring(0, dot);
+        }
+    }
+}
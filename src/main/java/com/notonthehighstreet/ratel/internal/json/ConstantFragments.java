@@ -0,0 +1,118 @@
+package com.notonthehighstreet.ratel.internal.json;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.notonthehighstreet.ratel.internal.model.Notifier;
+import com.notonthehighstreet.ratel.internal.model.Server;
+
+/**
+ * The parts of a notice that are the same for every notice sent by an instance: the notifier block and everything in the server block apart from the memory statistics.
+ * These are encoded to UTF-8 once and then copied into each notice as raw bytes, with the parts that change in between.
+ */
+final class ConstantFragments {
+
+    private final Notifier notifier;
+    private final String hostname;
+    private final String environment;
+    private final String projectRoot;
+
+    /** Everything up to the memory statistics. */
+    final SerializableString beforeMemory;
+    /** From the end of the memory statistics to the start of the request. */
+    final SerializableString beforeRequest;
+    /** From the end of the request to the start of the error. */
+    final SerializableString beforeError;
+    /** Closes the notice. */
+    final SerializableString end;
+
+    ConstantFragments(final Notifier notifier, final Server server) {
+        this.notifier = notifier;
+        this.hostname = server.getHostname();
+        this.environment = server.getEnvironmentName();
+        this.projectRoot = server.getProjectRoot().getPath();
+
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"server\":{\"hostname\":");
+        quote(hostname, sb);
+        sb.append(",\"stats\":{\"mem\":");
+        beforeMemory = new SerializedString(sb.toString());
+
+        sb.setLength(0);
+        sb.append("},\"environment_name\":");
+        quote(environment, sb);
+        sb.append(",\"project_root\":{\"path\":");
+        quote(projectRoot, sb);
+        sb.append("}},\"request\":");
+        beforeRequest = new SerializedString(sb.toString());
+
+        sb.setLength(0);
+        sb.append(",\"notifier\":{\"name\":");
+        quote(notifier.getName(), sb);
+        sb.append(",\"version\":");
+        quote(notifier.getVersion(), sb);
+        sb.append(",\"language\":");
+        quote(notifier.getLanguage(), sb);
+        sb.append(",\"api_key\":");
+        quote(notifier.getApiKey(), sb);
+        sb.append("},\"error\":");
+        beforeError = new SerializedString(sb.toString());
+
+        end = new SerializedString("}");
+
+        // Encode now rather than on the first notice
+        beforeMemory.asUnquotedUTF8();
+        beforeRequest.asUnquotedUTF8();
+        beforeError.asUnquotedUTF8();
+        end.asUnquotedUTF8();
+    }
+
+    /**
+     * Whether these fragments were built for the given notifier and server details.
+     * @param notifier Notifier sending the notice.
+     * @param server Server details of the notice.
+     * @return True if the fragments can be used for the notice.
+     */
+    boolean matches(final Notifier notifier, final Server server) {
+        return this.notifier == notifier && equals(hostname, server.getHostname()) && equals(environment, server.getEnvironmentName())
+                && equals(projectRoot, server.getProjectRoot().getPath());
+    }
+
+    static void quote(final String value, final StringBuilder sb) {
+        if (value == null) {
+            sb.append("null");
+        } else {
+            sb.append('"').append(JsonStringEncoder.getInstance().quoteAsString(value)).append('"');
+        }
+    }
+
+    private static boolean equals(final String one, final String two) {
+        return one == null ? two == null : one.equals(two);
+    }
+}
@@ -0,0 +1,145 @@
+package com.notonthehighstreet.ratel.internal.json;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of stack frames already encoded as JSON backtrace entries. The same frames turn up in notice after notice, so once a frame has been seen writing it
+ * costs a lookup and a copy of its bytes. The cache is split into segments, each a least recently used map behind its own lock, so that delivery threads rarely wait
+ * on one another.
+ */
+public class FrameCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param capacity Maximum number of frames held. Zero turns caching off.
+     */
+    public FrameCache(final int capacity) {
+        this.segments = new Segment[SEGMENTS];
+        final int perSegment = (capacity + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Encoded backtrace entry for a frame, encoding and caching it if it has not been seen recently.
+     * @param element Stack frame.
+     * @return The frame as a JSON object, already encoded to UTF-8.
+     */
+    public SerializableString get(final StackTraceElement element) {
+        final Segment segment = segmentFor(element);
+
+        SerializableString frame;
+        synchronized (segment) {
+            frame = segment.get(element);
+        }
+        if (frame != null) {
+            hits.incrementAndGet();
+            return frame;
+        }
+
+        misses.incrementAndGet();
+        frame = encode(element.getClassName(), element.getLineNumber(), element.getMethodName());
+        if (segment.capacity > 0) {
+            synchronized (segment) {
+                segment.put(element, frame);
+            }
+        }
+        return frame;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Proportion of frames found in the cache, for judging whether it is big enough.
+     * @return Hit rate between 0 and 1, or 0 before any frames have been looked up.
+     */
+    public double getHitRate() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Encode a backtrace entry with the same bytes data binding a {@linkplain com.notonthehighstreet.ratel.internal.model.Backtrace Backtrace} would give.
+     * @param file Value of the file field.
+     * @param number Line number.
+     * @param method Value of the method field.
+     * @return The entry as a JSON object, already encoded to UTF-8.
+     */
+    static SerializableString encode(final String file, final int number, final String method) {
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"file\":");
+        ConstantFragments.quote(file, sb);
+        sb.append(",\"number\":").append(number).append(",\"method\":");
+        ConstantFragments.quote(method, sb);
+        sb.append('}');
+
+        final SerializedString encoded = new SerializedString(sb.toString());
+        encoded.asUnquotedUTF8();
+        return encoded;
+    }
+
+    private Segment segmentFor(final StackTraceElement element) {
+        final int h = element.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static final class Segment extends LinkedHashMap<StackTraceElement, SerializableString> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Segment(final int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<StackTraceElement, SerializableString> eldest) {
+            return size() > capacity;
+        }
+    }
+}
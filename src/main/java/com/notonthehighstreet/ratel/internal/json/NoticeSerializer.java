@@ -0,0 +1,243 @@
+package com.notonthehighstreet.ratel.internal.json;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.notonthehighstreet.ratel.internal.delivery.Notice;
+import com.notonthehighstreet.ratel.internal.model.Backtrace;
+import com.notonthehighstreet.ratel.internal.model.BacktraceLimits;
+import com.notonthehighstreet.ratel.internal.model.Error;
+import com.notonthehighstreet.ratel.internal.model.Memory;
+import com.notonthehighstreet.ratel.internal.model.Notifier;
+import com.notonthehighstreet.ratel.internal.model.Request;
+import com.notonthehighstreet.ratel.internal.model.Server;
+import com.notonthehighstreet.ratel.internal.model.StackTraceVisitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Writes a notice in the Honeybadger 1.3.0 format straight to a {@linkplain JsonGenerator}. This produces exactly the same bytes as data binding a map of the
+ * {@linkplain Notifier}, {@linkplain com.notonthehighstreet.ratel.internal.model.Error Error}, {@linkplain com.notonthehighstreet.ratel.internal.model.Server Server} and
+ * {@linkplain com.notonthehighstreet.ratel.internal.model.Request Request} of a {@linkplain Notice} with a default
+ * {@linkplain com.fasterxml.jackson.databind.ObjectMapper ObjectMapper}, without building the intermediate maps,
+ * {@linkplain com.notonthehighstreet.ratel.internal.model.Backtrace Backtrace} objects or working out the properties of each class by reflection. The parts of the notice
+ * that never change are only encoded once; see {@linkplain ConstantFragments}. So are recently seen stack frames; see {@linkplain FrameCache}.
+ */
+public class NoticeSerializer {
+
+    private static final SerializableString COMMA = new SerializedString(",");
+    private static final SerializableString END_ARRAY = new SerializedString("]");
+
+    private final JsonFactory factory;
+    private final FrameCache frames;
+    private final BacktraceLimits limits;
+    private volatile ConstantFragments fragments;
+
+    public NoticeSerializer(final JsonFactory factory, final FrameCache frames, final BacktraceLimits limits) {
+        this.factory = factory;
+        this.frames = frames;
+        this.limits = limits;
+    }
+
+    public FrameCache getFrameCache() {
+        return frames;
+    }
+
+    public byte[] serialize(final Notice notice, final Notifier notifier) throws IOException {
+        // The generator still recycles its own buffers through the factory, so only the output array is new for each notice
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(notice.getEstimatedSize());
+        write(notice, notifier, out);
+        return out.toByteArray();
+    }
+
+    public void write(final Notice notice, final Notifier notifier, final OutputStream out) throws IOException {
+        final JsonGenerator generator = factory.createGenerator(out);
+        try {
+            write(notice, notifier, generator);
+        } finally {
+            generator.close();
+        }
+    }
+
+    void write(final Notice notice, final Notifier notifier, final JsonGenerator generator) throws IOException {
+        final Server server = notice.getServer();
+        final ConstantFragments constant = fragmentsFor(notifier, server);
+
+        // The generator only sees the memory statistics, request and error, as separate root level values with the constant parts copied in between. Keys are in the
+        // same order as the HashMap that was serialized previously.
+        generator.setRootValueSeparator(null);
+        generator.writeRaw(constant.beforeMemory);
+        writeMemory(server.getStats().getMem(), generator);
+        generator.writeRaw(constant.beforeRequest);
+        writeRequest(notice.getRequest(), generator);
+        generator.writeRaw(constant.beforeError);
+        writeError(notice.getThrowable(), generator);
+        generator.writeRaw(constant.end);
+    }
+
+    private ConstantFragments fragmentsFor(final Notifier notifier, final Server server) {
+        ConstantFragments current = fragments;
+        if (current == null || !current.matches(notifier, server)) {
+            // Only happens for the first notice and when the server details are refreshed
+            current = new ConstantFragments(notifier, server);
+            fragments = current;
+        }
+        return current;
+    }
+
+    private void writeMemory(final Memory memory, final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        writeNumber("total", memory.getTotal(), generator);
+        writeNumber("free", memory.getFree(), generator);
+        writeNumber("free_total", memory.getFreeTotal(), generator);
+        generator.writeEndObject();
+    }
+
+    private void writeRequest(final Request request, final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        writeString("url", request.getUrl(), generator);
+        writeMap("params", request.getParams(), generator);
+        writeMap("session", request.getSession(), generator);
+        writeMap("context", request.getContext(), generator);
+        writeString("component", request.getComponent(), generator);
+        writeString("action", request.getAction(), generator);
+        writeMap("cgi_data", request.getCgiData(), generator);
+        generator.writeEndObject();
+    }
+
+    private void writeError(final Throwable e, final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        writeString("message", Error.truncateMessage(e.getMessage()), generator);
+        generator.writeFieldName("backtrace");
+        // Opening the array as a raw value lets the generator take care of the separator before it and the field after it, while the entries themselves are copied
+        // in as already encoded bytes
+        generator.writeRawValue("[");
+        final BacktraceWriter backtrace = new BacktraceWriter(generator, frames);
+        Error.walkStackTrace(e, limits, backtrace);
+        if (backtrace.failure != null) {
+            throw backtrace.failure;
+        }
+        generator.writeRaw(END_ARRAY);
+        writeString("class", e.getClass().getName(), generator);
+        generator.writeEndObject();
+    }
+
+    private static void writeString(final String name, final String value, final JsonGenerator generator) throws IOException {
+        generator.writeFieldName(name);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value);
+        }
+    }
+
+    private static void writeNumber(final String name, final BigDecimal value, final JsonGenerator generator) throws IOException {
+        generator.writeFieldName(name);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private static void writeMap(final String name, final Map<String, String> map, final JsonGenerator generator) throws IOException {
+        generator.writeFieldName(name);
+        if (map == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartObject();
+        for (final Map.Entry<String, String> e : map.entrySet()) {
+            writeString(e.getKey(), e.getValue(), generator);
+        }
+        generator.writeEndObject();
+    }
+
+    private static final class BacktraceWriter implements StackTraceVisitor {
+        private final JsonGenerator generator;
+        private final FrameCache frames;
+        private boolean first = true;
+        private IOException failure;
+
+        private BacktraceWriter(final JsonGenerator generator, final FrameCache frames) {
+            this.generator = generator;
+            this.frames = frames;
+        }
+
+        @Override
+        public void frame(final StackTraceElement element) {
+            write(frames.get(element));
+        }
+
+        @Override
+        public void cause(final Throwable cause) {
+            write(FrameCache.encode("Caused by: " + cause, -1, null));
+        }
+
+        @Override
+        public void suppressed(final Throwable suppressed) {
+            write(FrameCache.encode("Suppressed: " + suppressed, -1, null));
+        }
+
+        @Override
+        public void circularReference(final Throwable seen) {
+            write(FrameCache.encode(Backtrace.circularReferenceMarker(seen), -1, null));
+        }
+
+        @Override
+        public void omitted(final int count) {
+            write(FrameCache.encode(Backtrace.omittedMarker(count), -1, null));
+        }
+
+        @Override
+        public void causesOmitted(final int causes) {
+            write(FrameCache.encode(Backtrace.causesOmittedMarker(causes), -1, null));
+        }
+
+        private void write(final SerializableString entry) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                if (!first) {
+                    generator.writeRaw(COMMA);
+                }
+                generator.writeRaw(entry);
+                first = false;
+            } catch (final IOException e) {
+                failure = e;
+            }
+        }
+    }
+}
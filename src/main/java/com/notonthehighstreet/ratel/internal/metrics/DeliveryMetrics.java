@@ -0,0 +1,125 @@
+package com.notonthehighstreet.ratel.internal.metrics;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * Counters and timings for notices as they pass through the library, shared by the classes that handle them. Counts kept elsewhere, such as notices dropped by
+ * the queue or sampled out, are not repeated here.
+ */
+public final class DeliveryMetrics {
+
+    private final StripedCounter submitted = new StripedCounter();
+    private final StripedCounter ignored = new StripedCounter();
+    private final StripedCounter queued = new StripedCounter();
+    private final StripedCounter sent = new StripedCounter();
+    private final StripedCounter failed = new StripedCounter();
+    private final StripedCounter retried = new StripedCounter();
+    private final StripedCounter inFlight = new StripedCounter();
+    private final LatencyHistogram construction = new LatencyHistogram();
+    private final LatencyHistogram serialization = new LatencyHistogram();
+    private final LatencyHistogram roundTrip = new LatencyHistogram();
+
+    /**
+     * Exceptions Honeybadger was asked to be notified about.
+     * @return Counter of notify calls.
+     */
+    public StripedCounter getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Exceptions not sent because they were excluded.
+     * @return Counter of excluded exceptions.
+     */
+    public StripedCounter getIgnored() {
+        return ignored;
+    }
+
+    /**
+     * Notices accepted by the delivery queue.
+     * @return Counter of queued notices.
+     */
+    public StripedCounter getQueued() {
+        return queued;
+    }
+
+    /**
+     * Notices Honeybadger accepted.
+     * @return Counter of sent notices.
+     */
+    public StripedCounter getSent() {
+        return sent;
+    }
+
+    /**
+     * Notices that were given up on, having been refused or having run out of attempts, whether or not they were then spooled.
+     * @return Counter of failed notices.
+     */
+    public StripedCounter getFailed() {
+        return failed;
+    }
+
+    /**
+     * Attempts to send a notice again after a failure.
+     * @return Counter of retries.
+     */
+    public StripedCounter getRetried() {
+        return retried;
+    }
+
+    /**
+     * Requests to Honeybadger that have been started but not completed.
+     * @return Gauge of requests in flight.
+     */
+    public StripedCounter getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Time taken to build a notice from an exception and its request.
+     * @return Histogram of construction times.
+     */
+    public LatencyHistogram getConstruction() {
+        return construction;
+    }
+
+    /**
+     * Time taken to turn a notice into JSON.
+     * @return Histogram of serialization times.
+     */
+    public LatencyHistogram getSerialization() {
+        return serialization;
+    }
+
+    /**
+     * Time from starting a request to Honeybadger to learning its outcome.
+     * @return Histogram of request times.
+     */
+    public LatencyHistogram getRoundTrip() {
+        return roundTrip;
+    }
+}
@@ -0,0 +1,100 @@
+package com.notonthehighstreet.ratel.internal.metrics;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations with a bucket for each power of two nanoseconds. Recording is a couple of atomic additions, with no locking or allocation, at the cost of
+ * percentiles only being accurate to within a factor of two. Like {@linkplain StripedCounter}, each thread records into its own stripe of buckets, so threads
+ * recording at the same time do not contend; reading a percentile sums the stripes.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+    // Padding after each stripe's buckets keeps the last bucket of one stripe off the cache line holding the first bucket of the next
+    private static final int STRIDE = BUCKETS + StripedCounter.PADDING;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(StripedCounter.STRIPES * STRIDE);
+    private final StripedCounter count = new StripedCounter();
+    private final StripedCounter totalNanos = new StripedCounter();
+
+    /**
+     * Record how long something took.
+     * @param nanos Duration in nanoseconds.
+     */
+    public void record(final long nanos) {
+        final long duration = Math.max(nanos, 0);
+        final int bucket = BUCKETS - Long.numberOfLeadingZeros(duration) - 1 + (duration == 0 ? 1 : 0);
+        buckets.incrementAndGet(StripedCounter.stripe() * STRIDE + bucket);
+        count.increment();
+        totalNanos.add(duration);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanNanos() {
+        final long recorded = count.sum();
+        return recorded == 0 ? 0 : (double) totalNanos.sum() / recorded;
+    }
+
+    /**
+     * Duration that the given proportion of recorded durations did not exceed.
+     * @param quantile Proportion between 0 and 1, such as 0.99 for the 99th percentile.
+     * @return Upper bound in nanoseconds of the bucket holding the percentile, or 0 if nothing has been recorded.
+     */
+    public long getPercentileNanos(final double quantile) {
+        final long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int stripe = 0; stripe < StripedCounter.STRIPES; stripe++) {
+            for (int i = 0; i < BUCKETS; i++) {
+                final long recorded = buckets.get(stripe * STRIDE + i);
+                counts[i] += recorded;
+                total += recorded;
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private static long upperBound(final int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << (bucket + 1)) - 1;
+    }
+}
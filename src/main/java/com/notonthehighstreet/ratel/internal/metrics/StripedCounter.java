@@ -0,0 +1,81 @@
+package com.notonthehighstreet.ratel.internal.metrics;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spread over several cells, each on its own cache line, with each thread adding to the cell chosen by its ID. Threads counting at the same time rarely
+ * touch the same cell, so unlike a single {@code AtomicLong} they do not contend. Reading the total sums the cells and is correspondingly slower.
+ */
+public final class StripedCounter {
+
+    // Longs per 64 byte cache line, so that neighbouring cells never share a line
+    static final int PADDING = 8;
+    static final int STRIPES = stripes();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    public void increment() {
+        add(1);
+    }
+
+    public void decrement() {
+        add(-1);
+    }
+
+    public void add(final long delta) {
+        cells.getAndAdd(stripe() * PADDING, delta);
+    }
+
+    /**
+     * Total of the counter. Not an atomic snapshot if other threads are counting at the time.
+     * @return Sum of all cells.
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * @return Stripe between 0 and {@code STRIPES - 1} that the current thread should count in.
+     */
+    static int stripe() {
+        final long id = Thread.currentThread().getId();
+        // Thread IDs are sequential, so spread them before taking the low bits
+        final int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (hash >>> 16) & (STRIPES - 1);
+    }
+
+    private static int stripes() {
+        final int processors = Math.min(Runtime.getRuntime().availableProcessors() * 2, 64);
+        return Integer.highestOneBit(Math.max(processors, 1) * 2 - 1);
+    }
+}
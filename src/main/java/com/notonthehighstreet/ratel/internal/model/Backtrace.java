@@ -46,6 +46,61 @@ public class Backtrace {
         return backtrace;
     }
 
+    public static Backtrace suppressedBacktrace(final Throwable e) {
+        final Backtrace backtrace = new Backtrace();
+        backtrace.setNumber(-1);
+        backtrace.setFile("Suppressed: " + e);
+        return backtrace;
+    }
+
+    public static Backtrace circularReferenceBacktrace(final Throwable e) {
+        final Backtrace backtrace = new Backtrace();
+        backtrace.setNumber(-1);
+        backtrace.setFile(circularReferenceMarker(e));
+        return backtrace;
+    }
+
+    /**
+     * Text of the entry standing in for an exception that has already appeared, in the same form as {@linkplain Throwable#printStackTrace()}.
+     * @param e Exception that appeared again.
+     * @return File of the marker entry.
+     */
+    public static String circularReferenceMarker(final Throwable e) {
+        return "[CIRCULAR REFERENCE: " + e + "]";
+    }
+
+    public static Backtrace omittedBacktrace(final int frames) {
+        final Backtrace backtrace = new Backtrace();
+        backtrace.setNumber(-1);
+        backtrace.setFile(omittedMarker(frames));
+        return backtrace;
+    }
+
+    /**
+     * Text of the entry standing in for frames that were left out, in the same form as {@linkplain Throwable#printStackTrace()}.
+     * @param frames Number of frames left out.
+     * @return File of the marker entry.
+     */
+    public static String omittedMarker(final int frames) {
+        return "... " + frames + " more";
+    }
+
+    public static Backtrace causesOmittedBacktrace(final int causes) {
+        final Backtrace backtrace = new Backtrace();
+        backtrace.setNumber(-1);
+        backtrace.setFile(causesOmittedMarker(causes));
+        return backtrace;
+    }
+
+    /**
+     * Text of the entry standing in for the end of a cause chain that was left out, in the same form as the marker for omitted frames.
+     * @param causes Number of exceptions left out.
+     * @return File of the marker entry.
+     */
+    public static String causesOmittedMarker(final int causes) {
+        return "... " + causes + " further causes omitted";
+    }
+
     private String file;
     private Integer number;
     private String method;
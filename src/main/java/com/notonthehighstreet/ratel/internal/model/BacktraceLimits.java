@@ -0,0 +1,66 @@
+package com.notonthehighstreet.ratel.internal.model;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * Limits on how much of an exception is turned into the backtrace sent to Honeybadger, so that a very deep stack, such as a {@linkplain StackOverflowError}, cannot
+ * make a notice enormous.
+ */
+public final class BacktraceLimits {
+
+    /**
+     * Limits used unless others are configured.
+     */
+    public static final BacktraceLimits DEFAULT = new BacktraceLimits(256, 1024, 32);
+
+    private final int maxFramesPerCause;
+    private final int maxFrames;
+    private final int maxChainLength;
+
+    /**
+     * @param maxFramesPerCause Maximum number of frames sent for each exception in the cause chain.
+     * @param maxFrames Maximum number of frames sent in total.
+     * @param maxChainLength Maximum number of exceptions, counting causes and suppressed exceptions, that are walked.
+     */
+    public BacktraceLimits(final int maxFramesPerCause, final int maxFrames, final int maxChainLength) {
+        this.maxFramesPerCause = maxFramesPerCause;
+        this.maxFrames = maxFrames;
+        this.maxChainLength = maxChainLength;
+    }
+
+    public int getMaxFramesPerCause() {
+        return maxFramesPerCause;
+    }
+
+    public int getMaxFrames() {
+        return maxFrames;
+    }
+
+    public int getMaxChainLength() {
+        return maxChainLength;
+    }
+}
@@ -28,35 +28,203 @@ package com.notonthehighstreet.ratel.internal.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Honeybadger API class. Equivalent to a {@linkplain Throwable}.
  */
 public class Error {
 
+    private static final int MAX_MESSAGE_LENGTH = 1024;
+    private static final Throwable[] NO_THROWABLES = new Throwable[0];
+    private static final Method GET_SUPPRESSED = getSuppressedMethod();
+
     public static Error fromException(final Throwable e) {
-        return new Error(e.getClass().getName(), e.getMessage(), unwrapStackTrace(e));
+        return fromException(e, BacktraceLimits.DEFAULT);
+    }
+
+    public static Error fromException(final Throwable e, final BacktraceLimits limits) {
+        return new Error(e.getClass().getName(), e.getMessage(), unwrapStackTrace(e, limits));
+    }
+
+    /**
+     * Message of an exception, truncated to the length that will be sent to Honeybadger.
+     * @param message Message to truncate.
+     * @return Message that will be sent to Honeybadger.
+     */
+    public static String truncateMessage(final String message) {
+        return message != null && message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message;
+    }
+
+    /**
+     * Walk the frames that make up the backtrace sent to Honeybadger, without creating a {@linkplain Backtrace} for each one, using the default limits.
+     * @param e Exception to walk.
+     * @param visitor Visitor that will be told about every frame.
+     */
+    public static void walkStackTrace(final Throwable e, final StackTraceVisitor visitor) {
+        walkStackTrace(e, BacktraceLimits.DEFAULT, visitor);
+    }
+
+    /**
+     * Walk the frames that make up the backtrace sent to Honeybadger, without creating a {@linkplain Backtrace} for each one. As Honeybadger only supports a single
+     * error, the causes and suppressed exceptions are massaged into a single backtrace the same way {@linkplain Throwable#printStackTrace()} does: each one is
+     * introduced by a marker and followed by its own frames, leaving out the frames it has in common with the exception that encloses it. An exception that has
+     * already been walked is marked as a circular reference rather than walked again, so a cause chain that loops back on itself still ends. A chain longer than
+     * the limit ends with a marker giving the number of exceptions left out.
+     * @param e Exception to walk.
+     * @param limits Limits on the number of frames and exceptions.
+     * @param visitor Visitor that will be told about every frame.
+     */
+    public static void walkStackTrace(final Throwable e, final BacktraceLimits limits, final StackTraceVisitor visitor) {
+        new Walk(limits, visitor).walk(e, null, Kind.ROOT);
+    }
+
+    /**
+     * Exceptions suppressed by the given exception. {@linkplain Throwable#getSuppressed()} is only available from Java 7, so is looked up reflectively.
+     * @param e Exception to look at.
+     * @return Suppressed exceptions, empty if there are none or the JVM does not support them.
+     */
+    static Throwable[] suppressedBy(final Throwable e) {
+        if (GET_SUPPRESSED == null) {
+            return NO_THROWABLES;
+        }
+        try {
+            return (Throwable[]) GET_SUPPRESSED.invoke(e);
+        } catch (final Exception ex) {
+            return NO_THROWABLES;
+        }
+    }
+
+    private static Method getSuppressedMethod() {
+        try {
+            return Throwable.class.getMethod("getSuppressed");
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static int framesInCommon(final StackTraceElement[] elements, final StackTraceElement[] enclosing) {
+        int m = elements.length - 1;
+        int n = enclosing.length - 1;
+        while (m >= 0 && n >= 0 && elements[m].equals(enclosing[n])) {
+            m--;
+            n--;
+        }
+        return elements.length - 1 - m;
+    }
+
+    private enum Kind {
+        ROOT, CAUSE, SUPPRESSED
+    }
+
+    private static final class Walk {
+        private final BacktraceLimits limits;
+        private final StackTraceVisitor visitor;
+        private final Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+        private int remainingFrames;
+
+        private Walk(final BacktraceLimits limits, final StackTraceVisitor visitor) {
+            this.limits = limits;
+            this.visitor = visitor;
+            this.remainingFrames = limits.getMaxFrames();
+        }
+
+        private void walk(final Throwable e, final StackTraceElement[] enclosingElements, final Kind kind) {
+            StackTraceElement[] enclosing = enclosingElements;
+            Kind current = kind;
+
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (seen.contains(t)) {
+                    visitor.circularReference(t);
+                    return;
+                }
+                if (seen.size() >= limits.getMaxChainLength()) {
+                    visitor.causesOmitted(remaining(t));
+                    return;
+                }
+                seen.add(t);
+
+                if (current == Kind.CAUSE) {
+                    visitor.cause(t);
+                } else if (current == Kind.SUPPRESSED) {
+                    visitor.suppressed(t);
+                }
+
+                final StackTraceElement[] elements = t.getStackTrace();
+                frames(elements, enclosing);
+
+                // Suppressed exceptions come before the cause, as with printStackTrace
+                for (final Throwable suppressed : suppressedBy(t)) {
+                    walk(suppressed, elements, Kind.SUPPRESSED);
+                }
+
+                enclosing = elements;
+                current = Kind.CAUSE;
+            }
+        }
+
+        private int remaining(final Throwable e) {
+            // Only reached for chains over the limit, so the extra set is rarely needed
+            final Set<Throwable> counted = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+            Throwable t = e;
+            while (t != null && !seen.contains(t) && counted.add(t)) {
+                t = t.getCause();
+            }
+            return counted.size();
+        }
+
+        private void frames(final StackTraceElement[] elements, final StackTraceElement[] enclosing) {
+            final int unique = elements.length - (enclosing == null ? 0 : framesInCommon(elements, enclosing));
+            final int shown = Math.max(0, Math.min(unique, Math.min(limits.getMaxFramesPerCause(), remainingFrames)));
+            for (int i = 0; i < shown; i++) {
+                visitor.frame(elements[i]);
+            }
+            if (shown < elements.length) {
+                visitor.omitted(elements.length - shown);
+            }
+            remainingFrames -= shown;
+        }
     }
 
-    private static List<Backtrace> unwrapStackTrace(final Throwable e) {
-        // As Honeybadger only supports a single error, we need to massage the wrapped exceptions into a single stack trace
+    private static List<Backtrace> unwrapStackTrace(final Throwable e, final BacktraceLimits limits) {
         final List<Backtrace> backtraces = new ArrayList<Backtrace>();
 
-        Throwable cause = e;
+        walkStackTrace(e, limits, new StackTraceVisitor() {
+            @Override
+            public void frame(final StackTraceElement element) {
+                backtraces.add(Backtrace.fromStackTrace(element));
+            }
 
-        while (cause != null) {
-            if (!backtraces.isEmpty()) {
+            @Override
+            public void cause(final Throwable cause) {
                 backtraces.add(Backtrace.markerBacktrace(cause));
             }
 
-            for (final StackTraceElement element : e.getStackTrace()) {
-                backtraces.add(Backtrace.fromStackTrace(element));
+            @Override
+            public void suppressed(final Throwable suppressed) {
+                backtraces.add(Backtrace.suppressedBacktrace(suppressed));
             }
 
-            cause = cause.getCause();
-        }
+            @Override
+            public void circularReference(final Throwable seen) {
+                backtraces.add(Backtrace.circularReferenceBacktrace(seen));
+            }
+
+            @Override
+            public void omitted(final int frames) {
+                backtraces.add(Backtrace.omittedBacktrace(frames));
+            }
+
+            @Override
+            public void causesOmitted(final int causes) {
+                backtraces.add(Backtrace.causesOmittedBacktrace(causes));
+            }
+        });
 
         return backtraces;
     }
@@ -68,7 +236,7 @@ public class Error {
 
     private Error(final String clazz, final String message, final List<Backtrace> backtrace) {
         this.clazz = clazz;
-        this.message = message != null && message.length() > 1024 ? message.substring(0, 1024) : message;
+        this.message = truncateMessage(message);
         this.backtrace = backtrace;
     }
 
@@ -28,27 +28,17 @@ package com.notonthehighstreet.ratel.internal.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
 /**
  * Honeybadger API class. Contains information about the server the code is running on.
  */
 public class Server {
 
-    private static final Logger LOG = Logger.getLogger(Server.class.getName());
-
     public static Server toServer(final String environment) {
-        String hostName;
-        try {
-            hostName = InetAddress.getLocalHost().getHostName();
-        } catch (UnknownHostException e) {
-            LOG.log(Level.WARNING, "Unable to work out host name for localhost!", e);
-            hostName = "Unable to work out host name " + e.getMessage();
-        }
-        return new Server(environment, hostName, ProjectRoot.projectRoot());
+        return toServer(environment, ServerMetadata.resolve());
+    }
+
+    public static Server toServer(final String environment, final ServerMetadata metadata) {
+        return new Server(environment, metadata.getHostname(), metadata.getProjectRoot());
     }
 
     private Server(final String environmentName, final String hostname, final ProjectRoot projectRoot) {
@@ -0,0 +1,100 @@
+package com.notonthehighstreet.ratel.internal.model;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Details about the server that do not change from one notice to the next. Working these out can involve a DNS lookup, so they are resolved once and shared.
+ */
+public final class ServerMetadata {
+
+    private static final Logger LOG = Logger.getLogger(ServerMetadata.class.getName());
+
+    /**
+     * Source of the host name, so that a failing lookup can be substituted.
+     */
+    public interface HostNameLookup {
+        String getHostName() throws UnknownHostException;
+    }
+
+    /**
+     * Looks up the name of the local host.
+     */
+    public static final HostNameLookup LOCAL_HOST = new HostNameLookup() {
+        @Override
+        public String getHostName() throws UnknownHostException {
+            return InetAddress.getLocalHost().getHostName();
+        }
+    };
+
+    public static ServerMetadata resolve() {
+        return resolve(LOCAL_HOST);
+    }
+
+    public static ServerMetadata resolve(final HostNameLookup lookup) {
+        String hostName;
+        boolean resolved = true;
+        try {
+            hostName = lookup.getHostName();
+        } catch (UnknownHostException e) {
+            LOG.log(Level.WARNING, "Unable to work out host name for localhost!", e);
+            hostName = "Unable to work out host name " + e.getMessage();
+            resolved = false;
+        }
+        return new ServerMetadata(hostName, ProjectRoot.projectRoot(), resolved);
+    }
+
+    private final String hostname;
+    private final ProjectRoot projectRoot;
+    private final boolean resolved;
+
+    private ServerMetadata(final String hostname, final ProjectRoot projectRoot, final boolean resolved) {
+        this.hostname = hostname;
+        this.projectRoot = projectRoot;
+        this.resolved = resolved;
+    }
+
+    public String getHostname() {
+        return hostname;
+    }
+
+    public ProjectRoot getProjectRoot() {
+        return projectRoot;
+    }
+
+    /**
+     * Whether the host name was successfully looked up.
+     * @return False if the host name is a description of why the lookup failed.
+     */
+    public boolean isResolved() {
+        return resolved;
+    }
+}
@@ -0,0 +1,70 @@
+package com.notonthehighstreet.ratel.internal.model;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * Receives each entry of the backtrace that is sent to Honeybadger, in order.
+ * @see Error#walkStackTrace(Throwable, StackTraceVisitor)
+ */
+public interface StackTraceVisitor {
+
+    /**
+     * A single frame of the backtrace.
+     * @param element Frame of the stack trace.
+     */
+    void frame(StackTraceElement element);
+
+    /**
+     * Marks the point where the frames of a wrapped exception start.
+     * @param cause Exception whose frames follow.
+     */
+    void cause(Throwable cause);
+
+    /**
+     * Marks the point where the frames of a suppressed exception start.
+     * @param suppressed Exception whose frames follow.
+     */
+    void suppressed(Throwable suppressed);
+
+    /**
+     * Marks an exception that has already been walked, which is where a cause chain loops back on itself.
+     * @param seen Exception that was seen again.
+     */
+    void circularReference(Throwable seen);
+
+    /**
+     * Marks frames that were left out, either because they are the same as the frames of the enclosing exception or because a limit was reached.
+     * @param frames Number of frames left out.
+     */
+    void omitted(int frames);
+
+    /**
+     * Marks the end of a cause chain that was cut short because it was longer than the limit.
+     * @param causes Number of exceptions left out.
+     */
+    void causesOmitted(int causes);
+}
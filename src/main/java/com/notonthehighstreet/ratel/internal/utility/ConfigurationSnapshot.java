@@ -0,0 +1,116 @@
+package com.notonthehighstreet.ratel.internal.utility;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.HoneybadgerConfiguration;
+import com.notonthehighstreet.ratel.internal.filter.ExclusionFilter;
+import com.notonthehighstreet.ratel.internal.model.Notifier;
+
+import javax.annotation.CheckForNull;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Everything needed from a {@linkplain HoneybadgerConfiguration}, read once and worked out up front, so that sending a notice never calls back into the
+ * configuration. A new snapshot is taken to pick up changes and swapped in whole. Each notice holds on to the snapshot that was current when it was submitted and
+ * uses it for filtering, building, serializing and every attempt to send it, so a reload part way through never gives one notice a mix of old and new values.
+ * Notices replayed from the spool are sent with whichever snapshot is current at the time.
+ */
+public final class ConfigurationSnapshot {
+
+    private static final String API_VERSION = "1.3.0";
+
+    private final URL url;
+    private final Map<String, String> headers;
+    private final String name;
+    private final String environment;
+    private final String serverSoftware;
+    private final Notifier notifier;
+    private final ExclusionFilter exclusionFilter;
+
+    /**
+     * Read the configuration.
+     * @param configuration Configuration to read.
+     * @param excludeSubclasses True if excluded exceptions also exclude their subclasses.
+     * @param language Programming language reported to Honeybadger.
+     */
+    public ConfigurationSnapshot(final HoneybadgerConfiguration configuration, final boolean excludeSubclasses, final String language) {
+        final String key = configuration.getKey();
+        final String version = configuration.getVersion();
+
+        this.url = configuration.getUrl();
+        this.name = configuration.getName();
+        this.environment = configuration.getEnvironment();
+        this.serverSoftware = version == null ? null : name + "/" + version;
+        this.notifier = new Notifier(key, name, API_VERSION, language);
+        this.exclusionFilter = new ExclusionFilter(configuration.getExcludeExceptions(), excludeSubclasses);
+
+        final Map<String, String> headers = new HashMap<String, String>();
+        headers.put("X-API-Key", key);
+        headers.put("Content-Type", "application/json");
+        this.headers = Collections.unmodifiableMap(headers);
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * HTTP headers sent with every notice.
+     * @return Unmodifiable map of headers.
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Value of the SERVER_SOFTWARE CGI variable, made of the application name and version.
+     * @return Server software, or null if the application has no version.
+     */
+    @CheckForNull
+    public String getServerSoftware() {
+        return serverSoftware;
+    }
+
+    public Notifier getNotifier() {
+        return notifier;
+    }
+
+    public ExclusionFilter getExclusionFilter() {
+        return exclusionFilter;
+    }
+}
@@ -0,0 +1,157 @@
+package com.notonthehighstreet.ratel.internal.utility;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses request bodies into the gzip format. Each thread keeps its own encoder, so the {@linkplain Deflater} and output buffer are reused from one request to the
+ * next rather than allocating a fresh deflater, with its native memory, for every notice. A buffer grown by an unusually large notice is not kept, and
+ * {@linkplain #releaseAll()} frees every thread's deflater once compression is no longer needed.
+ */
+public final class GzipEncoder {
+
+    private static final int LEVEL = Deflater.BEST_SPEED;
+    private static final int HEADER_LENGTH = 10;
+    private static final int TRAILER_LENGTH = 8;
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int INITIAL_BUFFER_BYTES = 4096;
+    private static final int MAX_RETAINED_BUFFER_BYTES = 64 * 1024;
+
+    // Weak so that encoders belonging to threads that have finished can still be collected
+    private static final Set<GzipEncoder> ENCODERS_IN_USE = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<GzipEncoder, Boolean>()));
+
+    private static final ThreadLocal<GzipEncoder> ENCODERS = new ThreadLocal<GzipEncoder>() {
+        @Override
+        protected GzipEncoder initialValue() {
+            final GzipEncoder encoder = new GzipEncoder();
+            ENCODERS_IN_USE.add(encoder);
+            return encoder;
+        }
+    };
+
+    private final CRC32 crc = new CRC32();
+    private Deflater deflater;
+    private byte[] buffer = new byte[INITIAL_BUFFER_BYTES];
+
+    private GzipEncoder() {
+    }
+
+    /**
+     * The encoder belonging to the current thread.
+     * @return Encoder that may only be used on the current thread.
+     */
+    public static GzipEncoder forCurrentThread() {
+        return ENCODERS.get();
+    }
+
+    /**
+     * Compress the given bytes. The result is held in {@linkplain #getBuffer()} until the next call on this thread.
+     * @param input Bytes to compress.
+     * @return Number of bytes at the start of the buffer that make up the compressed result.
+     */
+    public synchronized int encode(final byte[] input) {
+        if (deflater == null) {
+            deflater = new Deflater(LEVEL, true);
+        }
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+
+        System.arraycopy(HEADER, 0, buffer, 0, HEADER_LENGTH);
+        int length = HEADER_LENGTH;
+        while (!deflater.finished()) {
+            if (length == buffer.length - TRAILER_LENGTH) {
+                grow();
+            }
+            length += deflater.deflate(buffer, length, buffer.length - TRAILER_LENGTH - length);
+        }
+
+        crc.reset();
+        crc.update(input);
+        length = writeInt(length, (int) crc.getValue());
+        return writeInt(length, input.length);
+    }
+
+    /**
+     * Buffer holding the result of the last call to {@linkplain #encode(byte[])}.
+     * @return Buffer containing the compressed bytes.
+     */
+    public synchronized byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Let go of the buffer if the last notice grew it beyond what is worth keeping, so that one large notice does not pin memory for as long as the thread lives.
+     * Call once the result of {@linkplain #encode(byte[])} has been written.
+     */
+    public synchronized void trim() {
+        if (buffer.length > MAX_RETAINED_BUFFER_BYTES) {
+            buffer = new byte[INITIAL_BUFFER_BYTES];
+        }
+    }
+
+    /**
+     * Free the native memory of every thread's deflater, along with any large buffers. An encoder used again afterwards starts a new deflater, so this is safe to
+     * call while other instances are still compressing, at the cost of them starting afresh.
+     */
+    public static void releaseAll() {
+        final GzipEncoder[] encoders;
+        synchronized (ENCODERS_IN_USE) {
+            encoders = ENCODERS_IN_USE.toArray(new GzipEncoder[ENCODERS_IN_USE.size()]);
+        }
+        for (final GzipEncoder encoder : encoders) {
+            encoder.end();
+        }
+    }
+
+    private synchronized void end() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        trim();
+    }
+
+    private void grow() {
+        final byte[] grown = new byte[buffer.length * 2];
+        System.arraycopy(buffer, 0, grown, 0, buffer.length);
+        buffer = grown;
+    }
+
+    private int writeInt(final int offset, final int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+        return offset + 4;
+    }
+}
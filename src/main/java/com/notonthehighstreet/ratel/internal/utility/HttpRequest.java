@@ -26,9 +26,8 @@ package com.notonthehighstreet.ratel.internal.utility;
  * #L%
  */
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -38,15 +37,64 @@ import java.util.concurrent.TimeUnit;
  */
 public class HttpRequest {
 
+    /**
+     * Compression threshold that turns compression off.
+     */
+    public static final int NO_COMPRESSION = Integer.MAX_VALUE;
+
     private static final int TEN_SECONDS = (int) TimeUnit.SECONDS.toMillis(10);
-    private final ObjectMapper mapper;
+    private final int compressionThreshold;
 
-    public HttpRequest(final ObjectMapper mapper) {
-        this.mapper = mapper;
+    public HttpRequest() {
+        this(NO_COMPRESSION);
     }
 
-    public int call(final HttpURLConnection connection, final String method, final Map<String, String> headers, final Object body) throws IOException {
+    /**
+     * @param compressionThreshold Serialized bodies of at least this many bytes are sent gzip compressed.
+     */
+    public HttpRequest(final int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public int call(final HttpURLConnection connection, final String method, final Map<String, String> headers, final byte[] body) throws IOException {
+
+        prepare(connection, method, headers);
+
+        final byte[] content;
+        final int length;
+        final GzipEncoder encoder;
+        if (body.length >= compressionThreshold) {
+            encoder = GzipEncoder.forCurrentThread();
+            length = encoder.encode(body);
+            content = encoder.getBuffer();
+            connection.setRequestProperty("Content-Encoding", "gzip");
+        } else {
+            encoder = null;
+            length = body.length;
+            content = body;
+        }
+
+        // The length is already known, so there is no need for the connection to buffer the body again
+        connection.setFixedLengthStreamingMode(length);
+
+        try {
+            final OutputStream out = connection.getOutputStream();
+            try {
+                out.write(content, 0, length);
+            } finally {
+                out.close();
+            }
+        } finally {
+            if (encoder != null) {
+                encoder.trim();
+            }
+        }
+
+        return connection.getResponseCode();
+
+    }
 
+    private void prepare(final HttpURLConnection connection, final String method, final Map<String, String> headers) throws IOException {
         connection.setConnectTimeout(TEN_SECONDS);
         connection.setReadTimeout(TEN_SECONDS);
 
@@ -57,10 +105,5 @@ public class HttpRequest {
         }
 
         connection.setDoOutput(true);
-
-        mapper.writeValue(connection.getOutputStream(), body);
-
-        return connection.getResponseCode();
-
     }
 }
@@ -0,0 +1,92 @@
+package com.notonthehighstreet.ratel.internal.utility;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.model.ServerMetadata;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds the most recently resolved {@linkplain ServerMetadata} so that building a notice is a single volatile read rather than a DNS lookup. The metadata is resolved once
+ * on construction and can then be refreshed in the background to pick up host name changes.
+ */
+public class ServerMetadataCache {
+
+    private static final Logger LOG = Logger.getLogger(ServerMetadataCache.class.getName());
+
+    private final ServerMetadata.HostNameLookup lookup;
+    private volatile ServerMetadata metadata;
+
+    public ServerMetadataCache() {
+        this(ServerMetadata.LOCAL_HOST);
+    }
+
+    ServerMetadataCache(final ServerMetadata.HostNameLookup lookup) {
+        this.lookup = lookup;
+        this.metadata = ServerMetadata.resolve(lookup);
+    }
+
+    public ServerMetadata get() {
+        return metadata;
+    }
+
+    /**
+     * Resolve the metadata again. A failed host name lookup will not replace a host name that was previously resolved successfully.
+     */
+    public void refresh() {
+        final ServerMetadata latest = ServerMetadata.resolve(lookup);
+        if (latest.isResolved() || !metadata.isResolved()) {
+            metadata = latest;
+        }
+    }
+
+    /**
+     * Periodically refresh the metadata on the given scheduler.
+     * @param scheduler Scheduler to run the refresh on.
+     * @param interval Time between refreshes, zero or less to never refresh.
+     * @param unit Unit of the interval.
+     */
+    public void scheduleRefresh(final ScheduledExecutorService scheduler, final long interval, final TimeUnit unit) {
+        if (interval <= 0) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refresh();
+                } catch (final RuntimeException e) {
+                    // Must not escape, otherwise the scheduler silently stops refreshing
+                    LOG.log(Level.WARNING, "Unable to refresh server details", e);
+                }
+            }
+        }, interval, interval, unit);
+    }
+}
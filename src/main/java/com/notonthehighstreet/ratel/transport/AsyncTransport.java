@@ -0,0 +1,96 @@
+package com.notonthehighstreet.ratel.transport;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.utility.DaemonThreadFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps another transport so that {@linkplain #send} returns straight away and the request is made on a small pool of threads owned by this transport. The threads
+ * delivering notices are then never held up waiting for Honeybadger to respond, and several notices can be in flight at once. Requests beyond what the pool and its
+ * bounded backlog can hold fail immediately rather than queueing without limit.
+ */
+public class AsyncTransport implements Transport, Closeable {
+
+    private final Transport delegate;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param delegate Transport that will make the requests.
+     * @param threads Maximum number of requests in flight at once.
+     * @param backlog Maximum number of requests waiting for a thread.
+     */
+    public AsyncTransport(final Transport delegate, final int threads, final int backlog) {
+        this.delegate = delegate;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(backlog),
+                new DaemonThreadFactory("honeybadger-transport"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void send(final URL url, final Map<String, String> headers, final byte[] body, final TransportCallback callback) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        delegate.send(url, headers, body, callback);
+                    } catch (final RuntimeException e) {
+                        // Nobody else would ever hear about this request, since the caller has long since returned
+                        callback.failed(new IOException("Honeybadger transport failed unexpectedly", e));
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            callback.failed(new IOException("Too many notices are already being sent to Honeybadger", e));
+        }
+    }
+
+    /**
+     * Number of requests that have been accepted but not yet completed.
+     * @return Number of requests in flight or waiting for a thread.
+     */
+    public int getPending() {
+        return executor.getActiveCount() + executor.getQueue().size();
+    }
+
+    /**
+     * Stop accepting new requests, which fail from now on. Requests already accepted are still completed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
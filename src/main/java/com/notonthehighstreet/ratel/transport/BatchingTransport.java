@@ -0,0 +1,270 @@
+package com.notonthehighstreet.ratel.transport;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.utility.DaemonThreadFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps another transport so that notices are collected into batches and each batch is sent in a single request, for use with a collector that accepts several
+ * notices at once rather than with Honeybadger itself. A batch is sent once it holds the maximum number of notices, or once its first notice has waited for the
+ * linger time, whichever comes first. Every notice in a batch is told the outcome of the one request.
+ */
+public class BatchingTransport implements Transport, Closeable {
+
+    /**
+     * How the notices in a batch are written into the request body.
+     */
+    public enum Format {
+
+        /**
+         * A single JSON array with each notice as an element.
+         */
+        JSON_ARRAY("application/json"),
+
+        /**
+         * Newline delimited JSON, with each notice on a line of its own.
+         */
+        NDJSON("application/x-ndjson");
+
+        private final String contentType;
+
+        Format(final String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    private final Transport delegate;
+    private final int maxBatchSize;
+    private final long lingerMillis;
+    private final Format format;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private List<byte[]> bodies = new ArrayList<byte[]>();
+    private List<TransportCallback> callbacks = new ArrayList<TransportCallback>();
+    private URL url;
+    private Map<String, String> headers;
+    private ScheduledFuture<?> lingerTimeout;
+    // Counts the batches taken, so that a linger timer that fires just as its batch is taken by size cannot send the next batch early
+    private long taken;
+
+    /**
+     * @param delegate Transport that will send each batch.
+     * @param maxBatchSize Maximum number of notices in a batch.
+     * @param linger Longest time a notice waits for the rest of its batch.
+     * @param unit Unit of the linger time.
+     * @param format How notices are written into the body of a batch.
+     */
+    public BatchingTransport(final Transport delegate, final int maxBatchSize, final long linger, final TimeUnit unit, final Format format) {
+        this(delegate, maxBatchSize, linger, unit, format, Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("honeybadger-batch")));
+    }
+
+    BatchingTransport(final Transport delegate, final int maxBatchSize, final long linger, final TimeUnit unit, final Format format,
+                      final ScheduledExecutorService scheduler) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be at least 1 but was " + maxBatchSize);
+        }
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMillis = unit.toMillis(linger);
+        this.format = format;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void send(final URL url, final Map<String, String> headers, final byte[] body, final TransportCallback callback) {
+        Batch previous = null;
+        Batch full = null;
+        synchronized (lock) {
+            if (this.url != null && !this.url.equals(url)) {
+                previous = take();
+            }
+            if (bodies.isEmpty()) {
+                this.url = url;
+                this.headers = headers;
+                lingerTimeout = scheduler.schedule(lingerExpired(taken), lingerMillis, TimeUnit.MILLISECONDS);
+            }
+            bodies.add(body);
+            callbacks.add(callback);
+            if (bodies.size() >= maxBatchSize) {
+                full = take();
+            }
+        }
+        deliver(previous);
+        deliver(full);
+    }
+
+    /**
+     * Send the notices collected so far without waiting for the batch to fill up.
+     */
+    public void flush() {
+        final Batch batch;
+        synchronized (lock) {
+            batch = take();
+        }
+        deliver(batch);
+    }
+
+    /**
+     * Number of notices waiting for their batch to be sent.
+     * @return Number of notices in the current batch.
+     */
+    public int getPending() {
+        synchronized (lock) {
+            return bodies.size();
+        }
+    }
+
+    /**
+     * Send any notices collected so far and stop the linger timer.
+     */
+    @Override
+    public void close() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    private Runnable lingerExpired(final long batch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                final Batch expired;
+                synchronized (lock) {
+                    expired = taken == batch ? take() : null;
+                }
+                deliver(expired);
+            }
+        };
+    }
+
+    @CheckForNull
+    private Batch take() {
+        if (bodies.isEmpty()) {
+            return null;
+        }
+        lingerTimeout.cancel(false);
+        lingerTimeout = null;
+        taken++;
+        final Batch batch = new Batch(url, headers, bodies, callbacks);
+        bodies = new ArrayList<byte[]>();
+        callbacks = new ArrayList<TransportCallback>();
+        url = null;
+        headers = null;
+        return batch;
+    }
+
+    private void deliver(@CheckForNull final Batch batch) {
+        if (batch == null) {
+            return;
+        }
+        final Map<String, String> batchHeaders = new HashMap<String, String>(batch.headers);
+        batchHeaders.put("Content-Type", format.getContentType());
+        try {
+            delegate.send(batch.url, batchHeaders, encode(batch.bodies), batch);
+        } catch (final RuntimeException e) {
+            // Every notice in the batch has to hear about it, and on the linger timer the exception would otherwise be lost
+            batch.failed(new IOException("Honeybadger transport failed unexpectedly", e));
+        }
+    }
+
+    private byte[] encode(final List<byte[]> notices) {
+        int length = 2;
+        for (final byte[] notice : notices) {
+            length += notice.length + 1;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        if (format == Format.JSON_ARRAY) {
+            out.write('[');
+        }
+        for (int i = 0; i < notices.size(); i++) {
+            if (format == Format.JSON_ARRAY && i > 0) {
+                out.write(',');
+            }
+            final byte[] notice = notices.get(i);
+            out.write(notice, 0, notice.length);
+            if (format == Format.NDJSON) {
+                out.write('\n');
+            }
+        }
+        if (format == Format.JSON_ARRAY) {
+            out.write(']');
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Notices taken from the transport to be sent together, passing the outcome on to each of their callbacks.
+     */
+    private static final class Batch implements TransportCallback {
+
+        private final URL url;
+        private final Map<String, String> headers;
+        private final List<byte[]> bodies;
+        private final List<TransportCallback> callbacks;
+
+        private Batch(final URL url, final Map<String, String> headers, final List<byte[]> bodies, final List<TransportCallback> callbacks) {
+            this.url = url;
+            this.headers = headers;
+            this.bodies = bodies;
+            this.callbacks = callbacks;
+        }
+
+        @Override
+        public void completed(final int statusCode, @Nullable final String retryAfter) {
+            for (final TransportCallback callback : callbacks) {
+                callback.completed(statusCode, retryAfter);
+            }
+        }
+
+        @Override
+        public void failed(final IOException e) {
+            for (final TransportCallback callback : callbacks) {
+                callback.failed(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.notonthehighstreet.ratel.transport;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.utility.HttpRequest;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Sends notices with a blocking {@linkplain HttpURLConnection} on the calling thread. This is the transport used unless another one is configured.
+ */
+public class HttpUrlConnectionTransport implements Transport {
+
+    private final HttpRequest request;
+
+    public HttpUrlConnectionTransport() {
+        this(new HttpRequest());
+    }
+
+    public HttpUrlConnectionTransport(final HttpRequest request) {
+        this.request = request;
+    }
+
+    @Override
+    public void send(final URL url, final Map<String, String> headers, final byte[] body, final TransportCallback callback) {
+        final int statusCode;
+        final String retryAfter;
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            statusCode = request.call(connection, "POST", headers, body);
+            retryAfter = connection.getHeaderField("Retry-After");
+        } catch (final IOException e) {
+            callback.failed(e);
+            return;
+        }
+        callback.completed(statusCode, retryAfter);
+    }
+}
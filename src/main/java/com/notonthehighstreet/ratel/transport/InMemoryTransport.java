@@ -0,0 +1,126 @@
+package com.notonthehighstreet.ratel.transport;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stand-in for Honeybadger that keeps every notice it is sent in memory, for use in tests. Responds with a 201 unless told otherwise.
+ */
+public class InMemoryTransport implements Transport {
+
+    /**
+     * A single request made to the transport.
+     */
+    public static final class Delivery {
+        private final URL url;
+        private final Map<String, String> headers;
+        private final byte[] body;
+
+        private Delivery(final URL url, final Map<String, String> headers, final byte[] body) {
+            this.url = url;
+            this.headers = Collections.unmodifiableMap(new HashMap<String, String>(headers));
+            this.body = body;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    private final List<Delivery> deliveries = new CopyOnWriteArrayList<Delivery>();
+    private volatile int statusCode = 201;
+    private volatile String retryAfter;
+    private volatile IOException failure;
+
+    @Override
+    public void send(final URL url, final Map<String, String> headers, final byte[] body, final TransportCallback callback) {
+        deliveries.add(new Delivery(url, headers, body));
+
+        final IOException e = failure;
+        if (e != null) {
+            callback.failed(e);
+        } else {
+            callback.completed(statusCode, retryAfter);
+        }
+    }
+
+    /**
+     * Respond to every following request with the given status code.
+     * @param statusCode HTTP status code to respond with.
+     */
+    public void respondWith(final int statusCode) {
+        respondWith(statusCode, null);
+    }
+
+    /**
+     * Respond to every following request with the given status code and Retry-After header.
+     * @param statusCode HTTP status code to respond with.
+     * @param retryAfter Value of the Retry-After header, or null to leave it out.
+     */
+    public void respondWith(final int statusCode, @Nullable final String retryAfter) {
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+        this.failure = null;
+    }
+
+    /**
+     * Fail every following request as though Honeybadger could not be reached.
+     * @param failure Exception to fail with, or null to go back to responding normally.
+     */
+    public void failWith(@Nullable final IOException failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * Every request made so far, oldest first.
+     * @return Requests made to this transport.
+     */
+    public List<Delivery> getDeliveries() {
+        return new ArrayList<Delivery>(deliveries);
+    }
+
+    public void clear() {
+        deliveries.clear();
+    }
+}
@@ -0,0 +1,46 @@
+package com.notonthehighstreet.ratel.transport;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Sends notices that have already been turned into JSON to Honeybadger. Implementations must be thread safe.
+ */
+public interface Transport {
+
+    /**
+     * Send a notice. This may complete before returning, on the calling thread, or later on a thread belonging to the transport; either way the callback must be called
+     * exactly once.
+     * @param url URL to send the notice to.
+     * @param headers HTTP headers to send with the notice.
+     * @param body JSON body of the notice.
+     * @param callback Told about the outcome of the request.
+     */
+    void send(URL url, Map<String, String> headers, byte[] body, TransportCallback callback);
+}
@@ -26,27 +26,40 @@ package com.notonthehighstreet.ratel;
  * #L%
  */
 
-import com.notonthehighstreet.ratel.internal.model.Error;
-import com.notonthehighstreet.ratel.internal.model.Notifier;
-import com.notonthehighstreet.ratel.internal.model.Request;
-import com.notonthehighstreet.ratel.internal.model.Server;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.notonthehighstreet.ratel.internal.utility.HttpRequest;
+import com.notonthehighstreet.ratel.transport.InMemoryTransport;
 import org.hamcrest.CustomTypeSafeMatcher;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
@@ -64,13 +77,15 @@ public class HoneybadgerTest {
     private URL url;
     private String key;
     private HttpRequest httpRequest;
+    private InMemoryTransport transport;
     private String language;
+    private DummyConfiguration configuration;
 
     @Before
     public void setup() throws MalformedURLException {
         executor = mock(Executor.class);
 
-        final DummyConfiguration configuration = new DummyConfiguration();
+        configuration = new DummyConfiguration();
 
         systemEnvironment = "expected environment";
         name = "expected name";
@@ -85,7 +100,8 @@ public class HoneybadgerTest {
         configuration.setExclude(Collections.singletonList(UnsupportedOperationException.class.getName()));
 
         httpRequest = mock(HttpRequest.class);
-        subject = new Honeybadger(configuration, executor, httpRequest, language);
+        transport = new InMemoryTransport();
+        subject = honeybadgerWith(new HoneybadgerOptions());
     }
 
     @Test
@@ -108,13 +124,7 @@ public class HoneybadgerTest {
         final String requestUri = "URL that was requested";
         final Map<String, String> parameters = Collections.singletonMap("parameter", "value");
 
-        doAnswer(new Answer<Void>() {
-            @Override
-            public Void answer(final InvocationOnMock invocation) throws Throwable {
-                ((Runnable) invocation.getArguments()[0]).run();
-                return null;
-            }
-        }).when(executor).execute(any(Runnable.class));
+        runInline();
 
         subject.notify(requestUri,
                 controller,
@@ -138,18 +148,352 @@ public class HoneybadgerTest {
             }
         };
 
-        CustomTypeSafeMatcher<Object> matchesBodyMap = new CustomTypeSafeMatcher<Object>(description) {
+        CustomTypeSafeMatcher<byte[]> matchesBody = new CustomTypeSafeMatcher<byte[]>(description) {
             @Override
-            protected boolean matchesSafely(final Object item) {
-                if (!(item instanceof Map)) {
+            protected boolean matchesSafely(final byte[] item) {
+                try {
+                    return bodyMatches(new ObjectMapper().readTree(item), requestUri, parameters, method, controller, action, userAgent, remoteAddress);
+                } catch (final IOException e) {
                     return false;
                 }
-                final Map<?, ?> body = (Map<?, ?>) item;
-                return bodyMatches(body, requestUri, parameters, method, controller, action, userAgent, remoteAddress);
             }
         };
 
-        verify(httpRequest).call(argThat(matchesHttpUrlConnection), eq("POST"), eq(expectedHeaders(key)), argThat(matchesBodyMap));
+        verify(httpRequest).call(argThat(matchesHttpUrlConnection), eq("POST"), eq(expectedHeaders(key)), argThat(matchesBody));
+    }
+
+    @Test
+    public void shouldSendNoticeThroughConfiguredTransport() throws Exception {
+        subject = honeybadgerWith(inMemoryOptions());
+        runInline();
+
+        subject.notify("identifier", new IllegalArgumentException("exception message"));
+
+        final List<InMemoryTransport.Delivery> deliveries = transport.getDeliveries();
+        assertEquals(1, deliveries.size());
+        assertEquals(url, deliveries.get(0).getUrl());
+        assertEquals(expectedHeaders(key), deliveries.get(0).getHeaders());
+        assertEquals("exception message", text(new ObjectMapper().readTree(deliveries.get(0).getBody()).get("error"), "message"));
+        verifyZeroInteractions(httpRequest);
+    }
+
+    @Test
+    public void shouldSampleNoticesAndRecordSampleRate() throws Exception {
+        final HoneybadgerOptions options = inMemoryOptions();
+        options.setSampleRate("java.lang.IllegalStateException", 0);
+        options.setSampleRate("java.lang", 0.999999);
+        subject = honeybadgerWith(options);
+        runInline();
+
+        subject.notify("identifier", new IllegalStateException("sampled out"));
+        subject.notify("identifier", new IllegalArgumentException("sampled in"));
+
+        assertEquals(1, subject.getSampledOutNoticeCount());
+        final List<InMemoryTransport.Delivery> deliveries = transport.getDeliveries();
+        assertEquals(1, deliveries.size());
+        assertEquals("0.999999", text(new ObjectMapper().readTree(deliveries.get(0).getBody()).get("request").get("context"), "sample_rate"));
+    }
+
+    @Test
+    public void shouldBuildDeferredNoticeFromSnapshotOnDeliveryThread() throws Exception {
+        final HoneybadgerOptions options = inMemoryOptions();
+        options.setDeferredConstruction(true);
+        subject = honeybadgerWith(options);
+
+        final Map<String, String[]> parameters = new HashMap<String, String[]>();
+        parameters.put("parameter", new String[]{"value"});
+
+        subject.notify("url", "controller", "action", "GET", "agent", "address", parameters, new IllegalArgumentException("exception message"));
+
+        // The caller may reuse its maps once notify returns
+        parameters.clear();
+
+        final ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(drain.capture());
+        drain.getValue().run();
+
+        final JsonNode notice = new ObjectMapper().readTree(transport.getDeliveries().get(0).getBody());
+        assertEquals(Collections.singletonMap("parameter", "value"), toMap(notice.get("request").get("params")));
+        assertEquals("GET", text(notice.get("request").get("cgi_data"), "REQUEST_METHOD"));
+        assertEquals("controller", text(notice.get("request"), "component"));
+        assertEquals(systemEnvironment, text(notice.get("server"), "environment_name"));
+    }
+
+    @Test
+    public void shouldSendNoticeFromReusedBuilder() throws Exception {
+        final HoneybadgerOptions options = inMemoryOptions();
+        options.setDeferredConstruction(true);
+        subject = honeybadgerWith(options);
+
+        final NoticeBuilder builder = subject.notice();
+        builder.url("url").controller("controller").method("GET").parameter("parameter", "value").context("key", "context value")
+                .send(new IllegalArgumentException("first"));
+        assertSame(builder, subject.notice());
+        builder.url("other").send(new IllegalArgumentException("second"));
+
+        final ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(drain.capture());
+        drain.getValue().run();
+
+        final JsonNode first = new ObjectMapper().readTree(transport.getDeliveries().get(0).getBody());
+        assertEquals(Collections.singletonMap("parameter", "value"), toMap(first.get("request").get("params")));
+        assertEquals("GET", text(first.get("request").get("cgi_data"), "REQUEST_METHOD"));
+        assertEquals("context value", text(first.get("request").get("context"), "key"));
+
+        final JsonNode second = new ObjectMapper().readTree(transport.getDeliveries().get(1).getBody());
+        assertEquals("other", text(second.get("request"), "url"));
+        assertEquals(0, second.get("request").get("params").size());
+        assertEquals(0, second.get("request").get("context").size());
+    }
+
+    @Test
+    public void shouldSendLastValueOfRepeatedBuilderField() throws Exception {
+        subject = honeybadgerWith(inMemoryOptions());
+        runInline();
+
+        subject.notice().url("url").context("k", "1").context("k", "2").parameter("p", "a").parameter("p", "b")
+                .send(new IllegalArgumentException("exception message"));
+
+        final String body = new String(transport.getDeliveries().get(0).getBody(), "UTF-8");
+        assertTrue(body.contains("\"params\":{\"p\":\"b\"}"));
+        assertTrue(body.contains("\"context\":{\"k\":\"2\"}"));
+    }
+
+    @Test
+    public void shouldStartAgainWithBuilderThatWasNeverSent() throws Exception {
+        subject = honeybadgerWith(inMemoryOptions());
+
+        // Filling this one in is abandoned part way through, as though the caller's own code had thrown
+        final NoticeBuilder abandoned = subject.notice().url("abandoned").parameter("parameter", "value").session("user", "someone");
+        final NoticeBuilder builder = subject.notice();
+        assertSame(abandoned, builder);
+        builder.url("url").send(new IllegalArgumentException("exception message"));
+
+        final ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(drain.capture());
+        drain.getValue().run();
+
+        final JsonNode notice = new ObjectMapper().readTree(transport.getDeliveries().get(0).getBody());
+        assertEquals("url", text(notice.get("request"), "url"));
+        assertEquals(0, notice.get("request").get("params").size());
+        assertEquals(0, notice.get("request").get("session").size());
+    }
+
+    @Test
+    public void shouldCountNoticesAndExposeThemOverJmx() throws Exception {
+        final HoneybadgerOptions options = inMemoryOptions();
+        options.setJmxEnabled(true);
+        configuration.setName("metrics test");
+        subject = honeybadgerWith(options);
+        runInline();
+
+        subject.notify("identifier", new UnsupportedOperationException());
+        subject.notify("identifier", new IllegalArgumentException("exception message"));
+
+        final HoneybadgerMetrics metrics = subject.getMetrics();
+        assertEquals(2, metrics.getSubmitted());
+        assertEquals(1, metrics.getIgnored());
+        assertEquals(1, metrics.getQueued());
+        assertEquals(1, metrics.getSent());
+        assertEquals(0, metrics.getInFlight());
+        assertEquals(1, metrics.getConstruction().getCount());
+        assertEquals(1, metrics.getSerialization().getCount());
+        assertEquals(1, metrics.getRoundTrip().getCount());
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = new ObjectName("com.notonthehighstreet.ratel:type=Honeybadger,name=\"metrics test\"");
+        try {
+            assertEquals(1L, server.getAttribute(objectName, "Sent"));
+            assertEquals(1L, ((CompositeData) server.getAttribute(objectName, "RoundTrip")).get("count"));
+        } finally {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    @Test
+    public void shouldCountNoticeThatCouldNotBeBuiltAsFailed() throws Exception {
+        final HoneybadgerOptions options = inMemoryOptions();
+        options.setDeferredConstruction(true);
+        subject = honeybadgerWith(options);
+        runInline();
+
+        // Only looked at on the delivery thread, as the notice is deferred
+        final DeliveryFuture future = subject.submit("identifier", new IllegalArgumentException("exception message") {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public StackTraceElement[] getStackTrace() {
+                throw new IllegalStateException("broken exception");
+            }
+        });
+
+        assertEquals(DeliveryOutcome.FAILED, future.get(0, TimeUnit.SECONDS));
+        assertEquals(1, subject.getMetrics().getFailed());
+        assertEquals(0, transport.getDeliveries().size());
+    }
+
+    @Test
+    public void shouldOnlyReadConfigurationAgainOnReload() throws Exception {
+        subject = honeybadgerWith(inMemoryOptions());
+        runInline();
+
+        configuration.setKey("new key");
+        configuration.setExclude(Collections.singletonList(IllegalStateException.class.getName()));
+        subject.notify("identifier", new IllegalStateException("before reload"));
+
+        subject.reload();
+        subject.notify("identifier", new IllegalStateException("excluded after reload"));
+        subject.notify("identifier", new IllegalArgumentException("after reload"));
+
+        final List<InMemoryTransport.Delivery> deliveries = transport.getDeliveries();
+        assertEquals(2, deliveries.size());
+        assertEquals(expectedHeaders(key), deliveries.get(0).getHeaders());
+        assertEquals(expectedHeaders("new key"), deliveries.get(1).getHeaders());
+        assertEquals("after reload", text(new ObjectMapper().readTree(deliveries.get(1).getBody()).get("error"), "message"));
+    }
+
+    @Test
+    public void shouldSendNoticeWithConfigurationItWasSubmittedWith() throws Exception {
+        final HoneybadgerOptions options = inMemoryOptions();
+        options.setDeferredConstruction(true);
+        subject = honeybadgerWith(options);
+
+        subject.notify("identifier", new IllegalArgumentException("exception message"));
+        configuration.setKey("new key");
+        subject.reload();
+
+        final ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(drain.capture());
+        drain.getValue().run();
+
+        final InMemoryTransport.Delivery delivery = transport.getDeliveries().get(0);
+        assertEquals(expectedHeaders(key), delivery.getHeaders());
+        assertEquals(key, text(new ObjectMapper().readTree(delivery.getBody()).get("notifier"), "api_key"));
+    }
+
+    @Test
+    public void shouldDeliverQueuedNoticesOnCloseAndRejectLaterOnes() throws Exception {
+        subject = honeybadgerWith(inMemoryOptions());
+
+        // The executor never runs the drain, as though it had already been shut down
+        subject.notify("identifier", new IllegalArgumentException("first"));
+        subject.notify("identifier", new IllegalArgumentException("second"));
+
+        final FlushResult result = subject.close(1, TimeUnit.SECONDS);
+        subject.notify("identifier", new IllegalArgumentException("after close"));
+
+        assertEquals(2, result.getDelivered());
+        assertEquals(0, result.getAbandoned());
+        assertEquals(0, result.getPending());
+        assertEquals(2, transport.getDeliveries().size());
+    }
+
+    @Test
+    public void shouldSendFoldedRepeatsOnClose() throws Exception {
+        final HoneybadgerOptions options = inMemoryOptions();
+        options.setDeduplicationWindow(1, TimeUnit.HOURS);
+        subject = honeybadgerWith(options);
+
+        final IllegalArgumentException repeated = new IllegalArgumentException("exception message");
+        subject.notify("identifier", repeated);
+        subject.notify("identifier", repeated);
+
+        final FlushResult result = subject.close(1, TimeUnit.SECONDS);
+
+        assertEquals(2, result.getDelivered());
+        final JsonNode followUp = new ObjectMapper().readTree(transport.getDeliveries().get(1).getBody());
+        assertEquals("1", text(followUp.get("request").get("context"), "occurrences"));
+    }
+
+    @Test
+    public void shouldHandNoticesLeftAtDeadlineToFallbackSink() throws Exception {
+        final List<byte[]> abandoned = new ArrayList<byte[]>();
+        final HoneybadgerOptions options = inMemoryOptions();
+        options.setFallbackSink(new FallbackSink() {
+            @Override
+            public void abandoned(final byte[] notice) {
+                abandoned.add(notice);
+            }
+        });
+        subject = honeybadgerWith(options);
+
+        subject.notify("identifier", new IllegalArgumentException("exception message"));
+
+        final FlushResult result = subject.close(0, TimeUnit.SECONDS);
+
+        assertEquals(1, result.getAbandoned());
+        assertEquals(0, transport.getDeliveries().size());
+        assertEquals("exception message", text(new ObjectMapper().readTree(abandoned.get(0)).get("error"), "message"));
+    }
+
+    @Test
+    public void shouldCompleteFutureWithStatusCodeOnceNoticeIsDelivered() throws Exception {
+        subject = honeybadgerWith(inMemoryOptions());
+
+        final List<DeliveryOutcome> heard = new ArrayList<DeliveryOutcome>();
+        final DeliveryFuture future = subject.submit("identifier", new IllegalArgumentException("exception message")).addListener(new DeliveryListener() {
+            @Override
+            public void completed(final DeliveryOutcome outcome, final int statusCode) {
+                heard.add(outcome);
+            }
+        });
+        assertFalse(future.isDone());
+
+        final ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(drain.capture());
+        drain.getValue().run();
+
+        assertEquals(DeliveryOutcome.DELIVERED, future.get(0, TimeUnit.SECONDS));
+        assertEquals(201, future.getStatusCode());
+        assertEquals(Collections.singletonList(DeliveryOutcome.DELIVERED), heard);
+    }
+
+    @Test
+    public void shouldCompleteFutureWithReasonNoticeWasNotSent() throws Exception {
+        final HoneybadgerOptions options = inMemoryOptions();
+        options.setQueueCapacity(1);
+        options.setSampleRate(IllegalStateException.class.getName(), 0);
+        options.setFallbackSink(new FallbackSink() {
+            @Override
+            public void abandoned(final byte[] notice) {
+            }
+        });
+        subject = honeybadgerWith(options);
+
+        // The executor never runs the drain, so the first notice stays queued until close gives up on it
+        final DeliveryFuture queued = subject.submit("identifier", new IllegalArgumentException("queued"));
+        final DeliveryFuture dropped = subject.submit("identifier", new IllegalArgumentException("dropped"));
+        final DeliveryFuture excluded = subject.submit("identifier", new UnsupportedOperationException());
+        final DeliveryFuture sampled = subject.notice().url("identifier").submit(new IllegalStateException());
+        subject.close(0, TimeUnit.SECONDS);
+        final DeliveryFuture afterClose = subject.submit("identifier", new IllegalArgumentException("after close"));
+
+        assertEquals(DeliveryOutcome.ABANDONED, queued.get(0, TimeUnit.SECONDS));
+        assertEquals(DeliveryOutcome.DROPPED, dropped.get(0, TimeUnit.SECONDS));
+        assertEquals(DeliveryOutcome.EXCLUDED, excluded.get(0, TimeUnit.SECONDS));
+        assertEquals(DeliveryOutcome.SAMPLED_OUT, sampled.get(0, TimeUnit.SECONDS));
+        assertEquals(DeliveryOutcome.CLOSED, afterClose.get(0, TimeUnit.SECONDS));
+        assertEquals(-1, queued.getStatusCode());
+    }
+
+    private HoneybadgerOptions inMemoryOptions() {
+        final HoneybadgerOptions options = new HoneybadgerOptions();
+        options.setTransport(transport);
+        return options;
+    }
+
+    private Honeybadger honeybadgerWith(final HoneybadgerOptions options) {
+        return new Honeybadger(configuration, executor, httpRequest, new JsonFactory(), language, options);
+    }
+
+    private void runInline() {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(executor).execute(any(Runnable.class));
     }
 
     private Map<String, String[]> toArray(final Map<String, String> map) {
@@ -162,51 +506,60 @@ public class HoneybadgerTest {
         return ret;
     }
 
-    private boolean bodyMatches(final Object body, final String requestUri, final Map<String, String> parameters, final String method, final String controller,
+    private boolean bodyMatches(final JsonNode notice, final String requestUri, final Map<String, String> parameters, final String method, final String controller,
                                 final String action, final String userAgent, final String remoteAddress) {
-        if (!(body instanceof Map)) {
-            return false;
-        }
-
-        final Map notice = (Map) body;
-
-        final Server server = (Server) notice.get("server");
-        final Notifier notifier = (Notifier) notice.get("notifier");
-        final Error error = (Error) notice.get("error");
-        final Request request = (Request) notice.get("request");
+        final JsonNode server = notice.get("server");
+        final JsonNode notifier = notice.get("notifier");
+        final JsonNode error = notice.get("error");
+        final JsonNode request = notice.get("request");
 
         if (server == null || notifier == null || error == null || request == null) {
             return false;
         }
 
-        if (anyNull(server.getHostname(), server.getProjectRoot().getPath()) || !equals(server.getEnvironmentName(), systemEnvironment)) {
+        if (anyNull(text(server, "hostname"), text(server.get("project_root"), "path")) || !equals(text(server, "environment_name"), systemEnvironment)) {
             return false;
         }
 
-        if (anyNull(notifier.getName(), notifier.getVersion()) || !equals(notifier.getName(), name) || !equals(notifier.getLanguage(), language)) {
+        if (anyNull(text(notifier, "name"), text(notifier, "version")) || !equals(text(notifier, "name"), name) || !equals(text(notifier, "language"), language)) {
             return false;
         }
 
-        if (!request.getUrl().endsWith(requestUri) || !parameters.equals(request.getParams())) {
+        if (!text(request, "url").endsWith(requestUri) || !parameters.equals(toMap(request.get("params")))) {
             return false;
         }
 
-        if (anyNull(error.getMessage(), error.getClazz()) || error.getBacktrace().isEmpty()) {
+        if (anyNull(text(error, "message"), text(error, "class")) || error.get("backtrace").size() == 0) {
             return false;
         }
 
-        if (!request.getCgiData().get("REQUEST_METHOD").equals(method) || !request.getCgiData().get("HTTP_USER_AGENT").equals(userAgent)
-                || !request.getCgiData().get("REMOTE_ADDR").equals(remoteAddress)) {
+        final JsonNode cgiData = request.get("cgi_data");
+        if (!text(cgiData, "REQUEST_METHOD").equals(method) || !text(cgiData, "HTTP_USER_AGENT").equals(userAgent) || !text(cgiData, "REMOTE_ADDR").equals(remoteAddress)) {
             return false;
         }
 
-        if (!request.getAction().equals(action) || !request.getComponent().equals(controller)) {
+        if (!text(request, "action").equals(action) || !text(request, "component").equals(controller)) {
             return false;
         }
 
         return true;
     }
 
+    private String text(final JsonNode node, final String field) {
+        final JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private Map<String, String> toMap(final JsonNode node) {
+        final Map<String, String> map = new HashMap<String, String>();
+        final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            final Map.Entry<String, JsonNode> field = fields.next();
+            map.put(field.getKey(), field.getValue().asText());
+        }
+        return map;
+    }
+
     private Map<String, String> expectedHeaders(final String key) {
         final HashMap<String, String> headers = new HashMap<String, String>();
         headers.put("X-API-Key", key);
@@ -0,0 +1,64 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BackoffTest {
+
+    private Backoff subject;
+
+    @Before
+    public void setUp() {
+        subject = new Backoff(100, 1000, new Random(0));
+    }
+
+    @Test
+    public void shouldDoubleDelayUpToCapWithJitter() {
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(subject.delayMillis(1) <= 100);
+            assertTrue(subject.delayMillis(3) <= 400);
+            assertTrue(subject.delayMillis(64) <= 1000);
+            assertTrue(subject.delayMillis(64) >= 0);
+        }
+    }
+
+    @Test
+    public void shouldParseRetryAfterSecondsAndDates() {
+        assertEquals(120000, Backoff.parseRetryAfter("120", 0));
+        assertEquals(5000, Backoff.parseRetryAfter("Thu, 01 Jan 1970 00:00:10 GMT", 5000));
+        assertEquals(0, Backoff.parseRetryAfter("Thu, 01 Jan 1970 00:00:10 GMT", 60000));
+        assertEquals(-1, Backoff.parseRetryAfter("soon", 0));
+        assertEquals(-1, Backoff.parseRetryAfter(null, 0));
+    }
+}
@@ -0,0 +1,141 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.OverflowPolicy;
+import com.notonthehighstreet.ratel.internal.model.Request;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedNoticeQueueTest {
+
+    private BoundedNoticeQueue subject;
+
+    @Test
+    public void shouldDropNewestNoticeWhenFull() {
+        subject = new BoundedNoticeQueue(2, Long.MAX_VALUE, OverflowPolicy.DROP_NEWEST, 0, TimeUnit.MILLISECONDS);
+        final Notice first = notice(0);
+        final Notice second = notice(0);
+
+        assertTrue(subject.offer(first));
+        assertTrue(subject.offer(second));
+        assertFalse(subject.offer(notice(0)));
+
+        assertEquals(1, subject.getRejected());
+        assertEquals(1, subject.getDropped());
+        assertSame(first, subject.poll());
+        assertSame(second, subject.poll());
+        assertNull(subject.poll());
+    }
+
+    @Test
+    public void shouldDropOldestNoticeWhenFull() {
+        subject = new BoundedNoticeQueue(2, Long.MAX_VALUE, OverflowPolicy.DROP_OLDEST, 0, TimeUnit.MILLISECONDS);
+        final Notice second = notice(0);
+        final Notice third = notice(0);
+
+        subject.offer(notice(0));
+        subject.offer(second);
+        assertTrue(subject.offer(third));
+
+        assertEquals(1, subject.getEvicted());
+        assertSame(second, subject.poll());
+        assertSame(third, subject.poll());
+    }
+
+    @Test
+    public void shouldBoundQueueByEstimatedBytes() {
+        final Notice notice = notice(1000);
+        subject = new BoundedNoticeQueue(100, notice.getEstimatedSize() * 2L, OverflowPolicy.DROP_NEWEST, 0, TimeUnit.MILLISECONDS);
+
+        assertTrue(subject.offer(notice));
+        assertTrue(subject.offer(notice(1000)));
+        assertFalse(subject.offer(notice(1000)));
+        assertEquals(2, subject.size());
+        assertEquals(notice.getEstimatedSize() * 2L, subject.getBytes());
+
+        subject.poll();
+        assertEquals(notice.getEstimatedSize(), subject.getBytes());
+    }
+
+    @Test
+    public void shouldRejectNoticeThatCanNeverFit() {
+        subject = new BoundedNoticeQueue(100, 10, OverflowPolicy.DROP_OLDEST, 0, TimeUnit.MILLISECONDS);
+
+        assertFalse(subject.offer(notice(0)));
+        assertEquals(1, subject.getRejected());
+        assertEquals(0, subject.getEvicted());
+    }
+
+    @Test
+    public void shouldGiveUpBlockingAfterTimeout() {
+        subject = new BoundedNoticeQueue(1, Long.MAX_VALUE, OverflowPolicy.BLOCK, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(subject.offer(notice(0)));
+        assertFalse(subject.offer(notice(0)));
+        assertEquals(1, subject.getTimedOut());
+    }
+
+    @Test
+    public void shouldUnblockWhenSpaceBecomesAvailable() throws Exception {
+        subject = new BoundedNoticeQueue(1, Long.MAX_VALUE, OverflowPolicy.BLOCK, 10, TimeUnit.SECONDS);
+        subject.offer(notice(0));
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                subject.poll();
+            }
+        });
+        consumer.start();
+        started.await();
+
+        assertTrue(subject.offer(notice(0)));
+        consumer.join();
+        assertEquals(0, subject.getTimedOut());
+    }
+
+    private Notice notice(final int urlLength) {
+        final StringBuilder url = new StringBuilder(urlLength);
+        for (int i = 0; i < urlLength; i++) {
+            url.append('x');
+        }
+        final Request request = new Request();
+        request.setUrl(url.toString());
+        return new Notice(new IllegalStateException(), null, request);
+    }
+}
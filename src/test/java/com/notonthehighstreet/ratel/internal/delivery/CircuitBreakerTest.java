@@ -0,0 +1,132 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private CircuitBreaker subject;
+
+    @Before
+    public void setUp() {
+        subject = new CircuitBreaker(3, 10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldOpenAfterConsecutiveFailures() {
+        subject.onFailure(0);
+        subject.onFailure(0);
+        subject.onSuccess();
+        subject.onFailure(0);
+        subject.onFailure(0);
+        assertTrue(subject.allow(0));
+
+        subject.onFailure(0);
+
+        assertEquals(CircuitBreaker.State.OPEN, subject.getState());
+        assertFalse(subject.allow(OPEN_NANOS - 1));
+    }
+
+    @Test
+    public void shouldLetSingleProbeThroughAndCloseOnSuccess() {
+        open(0);
+
+        assertTrue(subject.allow(OPEN_NANOS));
+        assertFalse(subject.allow(OPEN_NANOS));
+
+        subject.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, subject.getState());
+        assertTrue(subject.allow(OPEN_NANOS));
+    }
+
+    @Test
+    public void shouldReopenWhenProbeFails() {
+        open(0);
+        assertTrue(subject.allow(OPEN_NANOS));
+
+        subject.onFailure(OPEN_NANOS);
+
+        assertEquals(CircuitBreaker.State.OPEN, subject.getState());
+        assertFalse(subject.allow(2 * OPEN_NANOS - 1));
+        assertTrue(subject.allow(2 * OPEN_NANOS));
+    }
+
+    @Test
+    public void shouldWarnOnceWhenOpening() {
+        final List<LogRecord> warnings = new ArrayList<LogRecord>();
+        final Handler handler = new Handler() {
+            @Override
+            public void publish(final LogRecord record) {
+                if (record.getLevel() == Level.WARNING) {
+                    warnings.add(record);
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+        logger.addHandler(handler);
+        try {
+            open(0);
+            subject.onFailure(0);
+            subject.onFailure(0);
+        } finally {
+            logger.removeHandler(handler);
+        }
+
+        assertEquals(1, warnings.size());
+    }
+
+    private void open(final long now) {
+        for (int i = 0; i < 3; i++) {
+            subject.onFailure(now);
+        }
+    }
+}
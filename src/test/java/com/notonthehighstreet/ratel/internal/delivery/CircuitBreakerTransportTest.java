@@ -0,0 +1,94 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.transport.BatchingTransport;
+import com.notonthehighstreet.ratel.transport.InMemoryTransport;
+import com.notonthehighstreet.ratel.transport.Transport;
+import com.notonthehighstreet.ratel.transport.TransportCallback;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CircuitBreakerTransportTest {
+
+    private URL url;
+
+    @Before
+    public void setUp() throws Exception {
+        url = new URL("http://localhost/");
+    }
+
+    @Test
+    public void shouldCountFailedBatchAsSingleFailure() throws Exception {
+        final CircuitBreaker breaker = new CircuitBreaker(2, 1, TimeUnit.MINUTES);
+        final InMemoryTransport delegate = new InMemoryTransport();
+        delegate.respondWith(503);
+        final BatchingTransport subject = new BatchingTransport(new CircuitBreakerTransport(delegate, breaker), 3, 1, TimeUnit.HOURS,
+                BatchingTransport.Format.JSON_ARRAY);
+        final TransportCallback callback = mock(TransportCallback.class);
+
+        try {
+            for (int i = 0; i < 3; i++) {
+                subject.send(url, Collections.<String, String>emptyMap(), new byte[]{'1'}, callback);
+            }
+        } finally {
+            subject.close();
+        }
+
+        verify(callback, times(3)).completed(503, null);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void shouldTreatDelegateThrowingAsFailure() {
+        final CircuitBreaker breaker = new CircuitBreaker(1, 1, TimeUnit.MINUTES);
+        final CircuitBreakerTransport subject = new CircuitBreakerTransport(new Transport() {
+            @Override
+            public void send(final URL url, final Map<String, String> headers, final byte[] body, final TransportCallback callback) {
+                throw new IllegalStateException("broken transport");
+            }
+        }, breaker);
+        final TransportCallback callback = mock(TransportCallback.class);
+
+        subject.send(url, Collections.<String, String>emptyMap(), new byte[]{'1'}, callback);
+
+        verify(callback).failed(any(IOException.class));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
@@ -0,0 +1,107 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.DeliveryListener;
+import com.notonthehighstreet.ratel.DeliveryOutcome;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeliveryTrackerTest {
+
+    private DeliveryTracker subject;
+    private List<String> heard;
+
+    @Before
+    public void setUp() {
+        subject = new DeliveryTracker();
+        heard = new ArrayList<String>();
+    }
+
+    @Test
+    public void shouldKeepFirstOutcomeAndCallListenersOnce() throws Exception {
+        subject.addListener(listener("first"));
+        subject.addListener(listener("second"));
+
+        assertTrue(subject.complete(DeliveryOutcome.DELIVERED, 201));
+        assertFalse(subject.complete(DeliveryOutcome.FAILED, -1));
+
+        assertEquals(DeliveryOutcome.DELIVERED, subject.await());
+        assertEquals(201, subject.getStatusCode());
+        assertEquals(Arrays.asList("first DELIVERED 201", "second DELIVERED 201"), heard);
+    }
+
+    @Test
+    public void shouldCallListenerStraightAwayOnceComplete() {
+        subject.complete(DeliveryOutcome.RATE_LIMITED, -1);
+
+        subject.addListener(listener("late"));
+
+        assertEquals(Arrays.asList("late RATE_LIMITED -1"), heard);
+    }
+
+    @Test
+    public void shouldCarryOnCallingListenersAfterOneFails() {
+        subject.addListener(new DeliveryListener() {
+            @Override
+            public void completed(final DeliveryOutcome outcome, final int statusCode) {
+                throw new IllegalStateException();
+            }
+        });
+        subject.addListener(listener("next"));
+
+        subject.complete(DeliveryOutcome.DROPPED, -1);
+
+        assertEquals(Arrays.asList("next DROPPED -1"), heard);
+    }
+
+    @Test
+    public void shouldGiveUpWaitingAfterTimeout() throws Exception {
+        assertNull(subject.await(1, TimeUnit.MILLISECONDS));
+        assertFalse(subject.isDone());
+        assertEquals(-1, subject.getStatusCode());
+    }
+
+    private DeliveryListener listener(final String name) {
+        return new DeliveryListener() {
+            @Override
+            public void completed(final DeliveryOutcome outcome, final int statusCode) {
+                heard.add(name + " " + outcome + " " + statusCode);
+            }
+        };
+    }
+}
@@ -0,0 +1,219 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.CircuitBreakerFallback;
+import com.notonthehighstreet.ratel.DeliveryOutcome;
+import com.notonthehighstreet.ratel.HoneybadgerConfiguration;
+import com.notonthehighstreet.ratel.internal.metrics.DeliveryMetrics;
+import com.notonthehighstreet.ratel.internal.utility.ConfigurationSnapshot;
+import com.notonthehighstreet.ratel.transport.InMemoryTransport;
+import com.notonthehighstreet.ratel.transport.Transport;
+import com.notonthehighstreet.ratel.transport.TransportCallback;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class DispatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Dispatcher subject;
+    private InMemoryTransport transport;
+    private NoticeSpool spool;
+    private ScheduledExecutorService scheduler;
+    private CircuitBreaker breaker;
+    private AtomicReference<ConfigurationSnapshot> configuration;
+
+    @Before
+    public void setUp() throws Exception {
+        final HoneybadgerConfiguration configuration = mock(HoneybadgerConfiguration.class);
+        when(configuration.getUrl()).thenReturn(new URL("http://localhost/"));
+        when(configuration.getKey()).thenReturn("key");
+        this.configuration = new AtomicReference<ConfigurationSnapshot>(new ConfigurationSnapshot(configuration, false, "java"));
+
+        transport = new InMemoryTransport();
+        spool = new NoticeSpool(folder.newFolder("spool"), 1024 * 1024, 1024);
+        scheduler = mock(ScheduledExecutorService.class);
+        breaker = new CircuitBreaker(3, 1, TimeUnit.MINUTES);
+        subject = new Dispatcher(this.configuration, new CircuitBreakerTransport(transport, breaker), spool, new Backoff(100, 10000, new Random(0)), 3, scheduler, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        }, breaker, CircuitBreakerFallback.SPOOL, new DeliveryMetrics());
+    }
+
+    @Test
+    public void shouldRetryTransientFailuresOnSchedulerThenSpool() throws Exception {
+        transport.failWith(new IOException());
+
+        subject.dispatch(new byte[]{1});
+        runScheduled(1);
+        runScheduled(2);
+
+        assertEquals(3, transport.getDeliveries().size());
+        assertTrue(spool.getBytes() > 0);
+    }
+
+    @Test
+    public void shouldHonourRetryAfter() throws Exception {
+        transport.respondWith(429, "5");
+
+        subject.dispatch(new byte[]{1});
+
+        final ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+        verify(scheduler).schedule(any(Runnable.class), delay.capture(), eq(TimeUnit.MILLISECONDS));
+        assertTrue(delay.getValue() >= 5000 && delay.getValue() <= 5100);
+    }
+
+    @Test
+    public void shouldNotRetryRejectedNotice() {
+        transport.respondWith(422);
+
+        subject.dispatch(new byte[]{1});
+
+        assertEquals(1, transport.getDeliveries().size());
+        assertEquals(0, spool.getBytes());
+        verifyZeroInteractions(scheduler);
+    }
+
+    @Test
+    public void shouldSpoolWithoutCallingHoneybadgerWhileCircuitBreakerIsOpen() throws Exception {
+        transport.failWith(new IOException());
+        subject.dispatch(new byte[]{1});
+        runScheduled(1);
+        runScheduled(2);
+        final long spooled = spool.getBytes();
+
+        subject.dispatch(new byte[]{2});
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(3, transport.getDeliveries().size());
+        assertEquals(1, subject.getRejected());
+        assertTrue(spool.getBytes() > spooled);
+    }
+
+    @Test
+    public void shouldHandBackWaitingRetriesOnClose() throws Exception {
+        transport.failWith(new IOException());
+        subject.dispatch(new byte[]{1});
+        assertEquals(1, subject.getWaiting());
+
+        final List<byte[]> waiting = subject.close();
+
+        assertEquals(1, waiting.size());
+        assertArrayEquals(new byte[]{1}, waiting.get(0));
+        assertEquals(0, subject.getWaiting());
+
+        // The retry that was already scheduled no longer sends, and later failures are not retried
+        runScheduled(1);
+        subject.dispatch(new byte[]{2});
+        assertEquals(2, transport.getDeliveries().size());
+        verify(scheduler, times(1)).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void shouldCompleteTrackerWithOutcomeAndStatusCode() throws Exception {
+        final DeliveryTracker delivered = new DeliveryTracker();
+        subject.dispatch(new byte[]{1}, delivered);
+        transport.respondWith(422);
+        final DeliveryTracker rejected = new DeliveryTracker();
+        subject.dispatch(new byte[]{2}, rejected);
+        transport.respondWith(503);
+        final DeliveryTracker spooled = new DeliveryTracker();
+        subject.dispatch(new byte[]{3}, spooled);
+        assertFalse(spooled.isDone());
+        runScheduled(1);
+        runScheduled(2);
+
+        assertEquals(DeliveryOutcome.DELIVERED, delivered.getOutcome());
+        assertEquals(201, delivered.getStatusCode());
+        assertEquals(DeliveryOutcome.REJECTED, rejected.getOutcome());
+        assertEquals(422, rejected.getStatusCode());
+        assertEquals(DeliveryOutcome.SPOOLED, spooled.getOutcome());
+        assertEquals(503, spooled.getStatusCode());
+    }
+
+    @Test
+    public void shouldTreatTransportThrowingAsFailedAttempt() throws Exception {
+        final DeliveryMetrics metrics = new DeliveryMetrics();
+        final CircuitBreaker probing = new CircuitBreaker(1, 0, TimeUnit.MILLISECONDS);
+        final Transport throwing = new Transport() {
+            @Override
+            public void send(final URL url, final Map<String, String> headers, final byte[] body, final TransportCallback callback) {
+                throw new IllegalStateException("not an HTTP connection");
+            }
+        };
+        subject = new Dispatcher(configuration, throwing, null, new Backoff(100, 10000, new Random(0)), 3, scheduler, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        }, probing, CircuitBreakerFallback.COUNT, metrics);
+
+        subject.dispatch(new byte[]{1});
+        // The breaker opened on the first failure, so this is the half-open probe
+        subject.dispatch(new byte[]{2});
+
+        assertEquals(CircuitBreaker.State.OPEN, probing.getState());
+        assertEquals(0, metrics.getInFlight().sum());
+        assertEquals(2, subject.getWaiting());
+    }
+
+    private void runScheduled(final int times) {
+        final ArgumentCaptor<Runnable> retry = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, times(times)).schedule(retry.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        retry.getValue().run();
+    }
+}
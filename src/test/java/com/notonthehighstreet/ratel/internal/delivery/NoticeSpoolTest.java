@@ -0,0 +1,138 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NoticeSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private NoticeSpool subject;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder("spool");
+        subject = new NoticeSpool(directory, 1024, 64);
+    }
+
+    @Test
+    public void shouldReadNoticesBackInOrderAfterRestart() throws Exception {
+        assertTrue(subject.append(bytes("first")));
+        assertTrue(subject.append(bytes("second")));
+        assertTrue(subject.append(bytes("third")));
+
+        final NoticeSpool reopened = new NoticeSpool(directory, 1024, 64);
+
+        assertEquals(subject.getBytes(), reopened.getBytes());
+        assertEquals(asList("first", "second", "third"), drain(reopened));
+        assertEquals(0, reopened.getBytes());
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void shouldKeepNoticesButRefuseMoreOnceClosed() throws Exception {
+        assertTrue(subject.append(bytes("first")));
+        assertTrue(subject.append(bytes("second")));
+        final NoticeSpool.Cursor cursor = subject.open();
+        cursor.read();
+
+        subject.close();
+
+        assertFalse(subject.append(bytes("third")));
+        assertNull(subject.open());
+        assertEquals(asList("first", "second"), drain(new NoticeSpool(directory, 1024, 64)));
+    }
+
+    @Test
+    public void shouldDeleteOldestSegmentsWhenFull() throws Exception {
+        subject = new NoticeSpool(directory, 100, 40);
+        final byte[] notice = new byte[24];
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(subject.append(notice));
+        }
+
+        assertTrue(subject.getBytes() <= 100);
+        assertEquals(2, subject.getDropped());
+        assertFalse(subject.append(new byte[200]));
+        assertEquals(3, subject.getDropped());
+    }
+
+    @Test
+    public void shouldIgnorePartlyWrittenNotice() throws Exception {
+        subject.append(bytes("complete"));
+        subject.append(bytes("torn"));
+
+        final File segment = directory.listFiles()[0];
+        final RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.setLength(file.length() - 2);
+        } finally {
+            file.close();
+        }
+
+        assertEquals(asList("complete"), drain(new NoticeSpool(directory, 1024, 64)));
+    }
+
+    private List<String> drain(final NoticeSpool spool) throws Exception {
+        final List<String> notices = new ArrayList<String>();
+        NoticeSpool.Cursor cursor;
+        while ((cursor = spool.open()) != null) {
+            byte[] body;
+            while ((body = cursor.read()) != null) {
+                notices.add(new String(body, "UTF-8"));
+                cursor.skip();
+            }
+            cursor.delete();
+        }
+        return notices;
+    }
+
+    private List<String> asList(final String... values) {
+        return java.util.Arrays.asList(values);
+    }
+
+    private byte[] bytes(final String value) throws Exception {
+        return value.getBytes("UTF-8");
+    }
+}
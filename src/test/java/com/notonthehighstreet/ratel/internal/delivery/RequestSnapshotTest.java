@@ -0,0 +1,103 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RequestSnapshotTest {
+
+    @Test
+    public void shouldReadBuiltSnapshotStraightFromItsArrays() {
+        final RequestSnapshot.Builder builder = new RequestSnapshot.Builder();
+        builder.setUrl("url");
+        builder.addParameter("single", new String[]{"value"});
+        builder.addParameter("multiple", new String[]{"first", "second"});
+        builder.addSession("user", "someone");
+        builder.addCookie("a", "1");
+        builder.addCookie("b", "2");
+        builder.addContext("key", "value");
+
+        final RequestSnapshot subject = builder.build();
+        builder.reset();
+
+        final Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("single", "value");
+        parameters.put("multiple", "first,second");
+        assertEquals(parameters, subject.getJoinedParameters());
+        assertEquals(Collections.singletonMap("user", "someone"), subject.getSession());
+        assertEquals("value", subject.getContext().get("key"));
+        assertEquals("a=1; b=2", subject.getCookieHeader());
+    }
+
+    @Test
+    public void shouldKeepLastValueOfRepeatedName() {
+        final RequestSnapshot.Builder builder = new RequestSnapshot.Builder();
+        builder.setUrl("url");
+        builder.addParameter("p", new String[]{"a"});
+        builder.addParameter("p", new String[]{"b"});
+        builder.addSession("user", "first");
+        builder.addSession("user", "second");
+        builder.addCookie("c", "1");
+        builder.addCookie("c", "2");
+        builder.addContext("k", "1");
+        builder.addContext("other", "value");
+        builder.addContext("k", "2");
+
+        final RequestSnapshot subject = builder.build();
+
+        assertEquals(Collections.singletonMap("p", "b"), subject.getJoinedParameters());
+        assertEquals(Collections.singletonMap("user", "second"), subject.getSession());
+        assertEquals("c=2", subject.getCookieHeader());
+        final Map<String, String> context = new HashMap<String, String>();
+        context.put("k", "2");
+        context.put("other", "value");
+        assertEquals(context, subject.getContext());
+        assertEquals(2, subject.getContext().size());
+    }
+
+    @Test
+    public void shouldHaveNothingForEmptyMaps() {
+        final Map<String, String> none = Collections.emptyMap();
+        final Map<String, String> context = new LinkedHashMap<String, String>();
+        context.put("key", "value");
+
+        final RequestSnapshot subject = new RequestSnapshot("url", null, null, null, null, null, null, none, none, context);
+
+        assertEquals(0, subject.getJoinedParameters().size());
+        assertEquals(0, subject.getSession().size());
+        assertNull(subject.getCookieHeader());
+        assertEquals(context, subject.getContext());
+    }
+}
@@ -0,0 +1,118 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.model.Request;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferNoticeQueueTest {
+
+    private RingBufferNoticeQueue subject;
+
+    @Before
+    public void setUp() {
+        subject = new RingBufferNoticeQueue(3, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void shouldRoundCapacityAndDropNewestWhenFull() {
+        final List<Notice> notices = new ArrayList<Notice>();
+        for (int i = 0; i < 4; i++) {
+            notices.add(notice());
+            assertTrue(subject.offer(notices.get(i)));
+        }
+
+        assertEquals(4, subject.getCapacity());
+        assertFalse(subject.offer(notice()));
+        assertEquals(1, subject.getDropped());
+
+        final Notice[] batch = new Notice[3];
+        assertEquals(3, subject.drainTo(batch));
+        assertSame(notices.get(0), batch[0]);
+        assertSame(notices.get(2), batch[2]);
+        assertSame(notices.get(3), subject.poll());
+        assertNull(subject.poll());
+        assertTrue(subject.isEmpty());
+        assertEquals(0, subject.getBytes());
+    }
+
+    @Test
+    public void shouldNotLoseNoticesOfferedConcurrently() throws Exception {
+        subject = new RingBufferNoticeQueue(1024, Long.MAX_VALUE);
+        final int producers = 4;
+        final int perProducer = 200;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < producers; i++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < perProducer; j++) {
+                        subject.offer(notice());
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        final Set<Notice> received = new HashSet<Notice>();
+        Notice notice;
+        while ((notice = subject.poll()) != null) {
+            received.add(notice);
+        }
+        assertEquals(producers * perProducer, received.size());
+        assertEquals(0, subject.getDropped());
+    }
+
+    private static Notice notice() {
+        return new Notice(new IllegalStateException(), null, new Request());
+    }
+}
@@ -0,0 +1,115 @@
+package com.notonthehighstreet.ratel.internal.delivery;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.CircuitBreakerFallback;
+import com.notonthehighstreet.ratel.HoneybadgerConfiguration;
+import com.notonthehighstreet.ratel.internal.metrics.DeliveryMetrics;
+import com.notonthehighstreet.ratel.internal.utility.ConfigurationSnapshot;
+import com.notonthehighstreet.ratel.transport.InMemoryTransport;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SpoolReplayerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SpoolReplayer subject;
+    private NoticeSpool spool;
+    private InMemoryTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        final HoneybadgerConfiguration configuration = mock(HoneybadgerConfiguration.class);
+        when(configuration.getUrl()).thenReturn(new URL("http://localhost/"));
+        when(configuration.getKey()).thenReturn("key");
+
+        spool = new NoticeSpool(folder.newFolder("spool"), 1024 * 1024, 64);
+        transport = new InMemoryTransport();
+        final Executor executor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        };
+        final Dispatcher dispatcher = new Dispatcher(new AtomicReference<ConfigurationSnapshot>(new ConfigurationSnapshot(configuration, false, "java")), transport,
+                spool, new Backoff(1, 1, new Random()), 1, mock(ScheduledExecutorService.class), executor, new CircuitBreaker(0, 1, TimeUnit.SECONDS),
+                CircuitBreakerFallback.SPOOL, new DeliveryMetrics());
+        subject = new SpoolReplayer(spool, executor, dispatcher);
+    }
+
+    @Test
+    public void shouldSendEverySpooledNoticeAndEmptySpool() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            spool.append(("notice " + i).getBytes("UTF-8"));
+        }
+
+        subject.run();
+
+        assertEquals(5, transport.getDeliveries().size());
+        assertEquals("notice 4", new String(transport.getDeliveries().get(4).getBody(), "UTF-8"));
+        assertEquals(0, spool.getBytes());
+    }
+
+    @Test
+    public void shouldKeepNoticesWhileHoneybadgerIsUnavailable() throws Exception {
+        spool.append("first".getBytes("UTF-8"));
+        spool.append("second".getBytes("UTF-8"));
+        final long bytes = spool.getBytes();
+
+        transport.respondWith(503);
+        subject.run();
+        transport.failWith(new IOException());
+        subject.run();
+
+        assertEquals(2, transport.getDeliveries().size());
+        assertEquals(bytes, spool.getBytes());
+
+        transport.clear();
+        transport.respondWith(201);
+        subject.run();
+
+        assertEquals(2, transport.getDeliveries().size());
+        assertEquals("first", new String(transport.getDeliveries().get(0).getBody(), "UTF-8"));
+        assertEquals(0, spool.getBytes());
+    }
+}
@@ -0,0 +1,159 @@
+package com.notonthehighstreet.ratel.internal.filter;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.delivery.Notice;
+import com.notonthehighstreet.ratel.internal.model.Request;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class DeduplicatorTest {
+
+    private Deduplicator subject;
+    private ScheduledExecutorService scheduler;
+    private Deduplicator.Sink sink;
+
+    @Before
+    public void setUp() {
+        scheduler = mock(ScheduledExecutorService.class);
+        sink = mock(Deduplicator.Sink.class);
+        subject = new Deduplicator(1, TimeUnit.MINUTES, 1024 * 1024, scheduler, sink);
+    }
+
+    @Test
+    public void shouldSendFirstOccurrenceAndFoldRepeats() {
+        final Throwable t = new IllegalStateException("first");
+
+        assertTrue(subject.admit(notice(t)));
+        assertFalse(subject.admit(notice(t)));
+        assertFalse(subject.admit(notice(t)));
+
+        assertEquals(2, subject.getFolded());
+        verify(sink, never()).submit(any(Notice.class));
+    }
+
+    @Test
+    public void shouldSendFollowUpWithOccurrencesWhenWindowCloses() {
+        final Throwable t = new IllegalStateException();
+        subject.admit(notice(t));
+        subject.admit(notice(t));
+        subject.admit(notice(t));
+
+        closeWindow();
+
+        final ArgumentCaptor<Notice> followUp = ArgumentCaptor.forClass(Notice.class);
+        verify(sink).submit(followUp.capture());
+        assertEquals("2", followUp.getValue().getRequest().getContext().get(Deduplicator.OCCURRENCES));
+
+        assertTrue("a new window should start after the old one closes", subject.admit(notice(t)));
+    }
+
+    @Test
+    public void shouldNotSendFollowUpWithoutRepeats() {
+        subject.admit(notice(new IllegalStateException()));
+
+        closeWindow();
+
+        verifyZeroInteractions(sink);
+    }
+
+    @Test
+    public void shouldHandBackFollowUpsWhenClosingAllWindows() {
+        final Throwable t = new IllegalStateException();
+        subject.admit(notice(t));
+        subject.admit(notice(t));
+
+        final List<Notice> followUps = subject.closeAll();
+
+        assertEquals(1, followUps.size());
+        assertEquals("1", followUps.get(0).getRequest().getContext().get(Deduplicator.OCCURRENCES));
+        // The window's own scheduled close finds it already closed
+        closeWindow();
+        verifyZeroInteractions(sink);
+    }
+
+    @Test
+    public void shouldSendRepeatsOnceHeldNoticesReachByteLimit() {
+        final Throwable first = new IllegalStateException();
+        final Throwable second = new IllegalArgumentException();
+        subject = new Deduplicator(1, TimeUnit.MINUTES, notice(first).getEstimatedSize(), scheduler, sink);
+        subject.admit(notice(first));
+        subject.admit(notice(second));
+
+        assertFalse(subject.admit(notice(first)));
+        assertTrue("no room left to hold a repeat", subject.admit(notice(second)));
+        assertEquals(notice(first).getEstimatedSize(), subject.getBytes());
+
+        subject.closeAll();
+        assertEquals(0, subject.getBytes());
+    }
+
+    @Test
+    public void shouldTreatDifferentExceptionsSeparately() {
+        assertTrue(subject.admit(notice(new IllegalStateException())));
+        assertTrue(subject.admit(notice(new IllegalArgumentException())));
+    }
+
+    @Test
+    public void shouldAdmitEverythingWhenDisabled() {
+        subject = new Deduplicator(0, TimeUnit.MILLISECONDS, 1024 * 1024, scheduler, sink);
+        final Throwable t = new IllegalStateException();
+
+        assertTrue(subject.admit(notice(t)));
+        assertTrue(subject.admit(notice(t)));
+        verifyZeroInteractions(scheduler);
+    }
+
+    private void closeWindow() {
+        final ArgumentCaptor<Runnable> close = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(close.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        close.getValue().run();
+    }
+
+    private Notice notice(final Throwable t) {
+        final Request request = new Request();
+        request.setContext(Collections.<String, String>emptyMap());
+        return new Notice(t, null, request);
+    }
+}
@@ -0,0 +1,66 @@
+package com.notonthehighstreet.ratel.internal.filter;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExclusionFilterTest {
+
+    @Test
+    public void shouldOnlyMatchExactClassByDefault() {
+        final ExclusionFilter subject = new ExclusionFilter(Arrays.asList(IOException.class.getName()), false);
+
+        assertTrue(subject.isExcluded(new IOException()));
+        assertFalse(subject.isExcluded(new FileNotFoundException()));
+    }
+
+    @Test
+    public void shouldMatchSuperclassesAndInterfaces() {
+        final ExclusionFilter subject = new ExclusionFilter(Arrays.asList(IOException.class.getName(), Marker.class.getName()), true);
+
+        assertTrue(subject.isExcluded(new FileNotFoundException()));
+        assertTrue(subject.isExcluded(new MarkedException()));
+        assertFalse(subject.isExcluded(new IllegalStateException()));
+    }
+
+    private interface Marker {
+    }
+
+    private interface SubMarker extends Marker {
+    }
+
+    private static class MarkedException extends RuntimeException implements SubMarker {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,80 @@
+package com.notonthehighstreet.ratel.internal.filter;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private RateLimiter subject;
+
+    @Test
+    public void shouldNotChargeGlobalAllowanceForNoticeLimitedByItsClass() {
+        subject = new RateLimiter(1, 0.5, 1);
+        final long now = later();
+
+        assertTrue(subject.tryAcquire(IllegalStateException.class, now));
+        assertFalse(subject.tryAcquire(IllegalStateException.class, now + ONE_SECOND));
+        assertTrue(subject.tryAcquire(IllegalArgumentException.class, now + ONE_SECOND));
+        assertEquals(1, subject.getLimited());
+    }
+
+    @Test
+    public void shouldNotChargeClassForNoticeLimitedGlobally() {
+        subject = new RateLimiter(1, 0.5, 1);
+        final long now = later();
+
+        assertTrue(subject.tryAcquire(IllegalStateException.class, now));
+        assertFalse(subject.tryAcquire(IllegalArgumentException.class, now));
+        // Would still be waiting on its own bucket had the rejected notice been charged to it
+        assertTrue(subject.tryAcquire(IllegalArgumentException.class, now + ONE_SECOND));
+        assertEquals(1, subject.getLimited());
+    }
+
+    @Test
+    public void shouldOnlyLimitGloballyWhenPerClassRateIsZero() {
+        subject = new RateLimiter(1, 0, 1);
+        final long now = later();
+
+        assertTrue(subject.tryAcquire(IllegalStateException.class, now));
+        assertFalse(subject.tryAcquire(IllegalArgumentException.class, now));
+        assertTrue(subject.tryAcquire(IllegalStateException.class, now + ONE_SECOND));
+    }
+
+    // Per class buckets are only created on first use, so keep clear of their start time
+    private static long later() {
+        return System.nanoTime() + ONE_SECOND * 60;
+    }
+}
@@ -0,0 +1,85 @@
+package com.notonthehighstreet.ratel.internal.filter;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SamplerTest {
+
+    @Test
+    public void shouldUseMostSpecificRule() {
+        final Map<String, Double> rates = new HashMap<String, Double>();
+        rates.put("java", 0.5);
+        rates.put("java.net", 0.1);
+        rates.put(SocketException.class.getName(), 0.01);
+
+        final Sampler subject = new Sampler(rates, 1);
+
+        assertEquals(0.01, subject.rateFor(SocketException.class), 0);
+        assertEquals(0.1, subject.rateFor(java.net.UnknownHostException.class), 0);
+        assertEquals(0.5, subject.rateFor(IOException.class), 0);
+        assertEquals(1, subject.rateFor(SamplerTest.class), 0);
+    }
+
+    @Test
+    public void shouldKeepRatesGivenAtConstruction() {
+        final Map<String, Double> rates = new HashMap<String, Double>();
+        rates.put("java.io", 0.5);
+        final Sampler subject = new Sampler(rates, 1);
+
+        rates.put(IOException.class.getName(), 0.1);
+
+        assertEquals(0.5, subject.rateFor(IOException.class), 0);
+    }
+
+    @Test
+    public void shouldAdmitInProportionToRate() {
+        final Sampler subject = new Sampler(new HashMap<String, Double>(), 1);
+
+        assertTrue(subject.admit(1));
+        assertFalse(subject.admit(0));
+
+        int admitted = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (subject.admit(0.25)) {
+                admitted++;
+            }
+        }
+
+        assertTrue(admitted > 2000 && admitted < 3000);
+        assertEquals(10001 - admitted, subject.getSampledOut());
+    }
+}
@@ -0,0 +1,73 @@
+package com.notonthehighstreet.ratel.internal.filter;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private TokenBucket subject;
+
+    @Test
+    public void shouldAllowBurstThenReject() {
+        subject = new TokenBucket(1, 3);
+        final long now = System.nanoTime();
+
+        assertTrue(subject.tryAcquire(now));
+        assertTrue(subject.tryAcquire(now));
+        assertTrue(subject.tryAcquire(now));
+        assertFalse(subject.tryAcquire(now));
+    }
+
+    @Test
+    public void shouldRefillAtConfiguredRate() {
+        subject = new TokenBucket(2, 1);
+        final long now = System.nanoTime();
+
+        assertTrue(subject.tryAcquire(now));
+        assertFalse(subject.tryAcquire(now));
+        assertFalse(subject.tryAcquire(now + ONE_SECOND / 4));
+        assertTrue(subject.tryAcquire(now + ONE_SECOND / 2));
+    }
+
+    @Test
+    public void shouldNotAccumulateMoreThanBurstWhileIdle() {
+        subject = new TokenBucket(10, 2);
+        final long later = System.nanoTime() + ONE_SECOND * 60;
+
+        assertTrue(subject.tryAcquire(later));
+        assertTrue(subject.tryAcquire(later));
+        assertFalse(subject.tryAcquire(later));
+    }
+}
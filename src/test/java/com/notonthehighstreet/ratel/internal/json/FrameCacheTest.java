@@ -0,0 +1,77 @@
+package com.notonthehighstreet.ratel.internal.json;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FrameCacheTest {
+
+    private FrameCache subject;
+
+    @Before
+    public void setUp() {
+        subject = new FrameCache(16);
+    }
+
+    @Test
+    public void shouldEncodeFrameOnceAndCountHits() {
+        final StackTraceElement element = new StackTraceElement("com.example.Class", "method", "Class.java", 42);
+
+        assertSame(subject.get(element), subject.get(new StackTraceElement("com.example.Class", "method", "Class.java", 42)));
+        assertEquals("{\"file\":\"com.example.Class\",\"number\":42,\"method\":\"method\"}", subject.get(element).getValue());
+
+        assertEquals(1, subject.getMisses());
+        assertEquals(2, subject.getHits());
+        assertEquals(2.0 / 3, subject.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void shouldStayWithinCapacity() {
+        for (int i = 0; i < 1000; i++) {
+            subject.get(new StackTraceElement("com.example.Class", "method" + i, "Class.java", i));
+        }
+        subject.get(new StackTraceElement("com.example.Class", "method0", "Class.java", 0));
+
+        assertEquals(0, subject.getHits());
+        assertEquals(1001, subject.getMisses());
+    }
+
+    @Test
+    public void shouldNotCacheWhenCapacityIsZero() {
+        subject = new FrameCache(0);
+        final StackTraceElement element = new StackTraceElement("com.example.Class", "method", "Class.java", 42);
+
+        subject.get(element);
+        subject.get(element);
+
+        assertEquals(0, subject.getHits());
+    }
+}
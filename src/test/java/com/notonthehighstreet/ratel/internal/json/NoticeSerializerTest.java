@@ -0,0 +1,126 @@
+package com.notonthehighstreet.ratel.internal.json;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notonthehighstreet.ratel.HoneybadgerOptions;
+import com.notonthehighstreet.ratel.internal.delivery.Notice;
+import com.notonthehighstreet.ratel.internal.model.BacktraceLimits;
+import com.notonthehighstreet.ratel.internal.model.Error;
+import com.notonthehighstreet.ratel.internal.model.Notifier;
+import com.notonthehighstreet.ratel.internal.model.Request;
+import com.notonthehighstreet.ratel.internal.model.Server;
+import com.notonthehighstreet.ratel.internal.model.ServerMetadata;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class NoticeSerializerTest {
+
+    private NoticeSerializer subject;
+    private ObjectMapper mapper;
+    private Notifier notifier;
+    private Server server;
+
+    @Before
+    public void setUp() {
+        mapper = new ObjectMapper();
+        subject = new NoticeSerializer(mapper.getFactory(), new FrameCache(new HoneybadgerOptions().getFrameCacheSize()), BacktraceLimits.DEFAULT);
+        notifier = new Notifier("key \"quoted\"", "name", "1.3.0", "java");
+        server = Server.toServer("environment", ServerMetadata.resolve());
+    }
+
+    @Test
+    public void shouldWriteSameBytesAsDataBinding() throws Exception {
+        final Map<String, String> params = new HashMap<String, String>();
+        params.put("query", "café & \"bar\"\n");
+        params.put("empty", null);
+
+        final Map<String, String> cgi = new HashMap<String, String>();
+        cgi.put("REQUEST_METHOD", "GET");
+        cgi.put("HTTP_USER_AGENT", "agent\t\u0001");
+
+        final Request request = new Request();
+        request.setUrl("http://localhost/path?query=café");
+        request.setAction("action");
+        request.setParams(params);
+        request.setSession(Collections.singletonMap("user", "1"));
+        request.setContext(Collections.<String, String>emptyMap());
+        request.setCgiData(cgi);
+
+        final Throwable t = new IllegalStateException(longMessage(), new IllegalArgumentException("cause", new NullPointerException()));
+
+        assertSameAsDataBinding(new Notice(t, server, request));
+    }
+
+    @Test
+    public void shouldWriteSameBytesAsDataBindingForMissingValues() throws Exception {
+        final Throwable t = new IllegalStateException(new UnsupportedOperationException());
+        t.setStackTrace(new StackTraceElement[0]);
+
+        assertSameAsDataBinding(new Notice(t, server, new Request()));
+    }
+
+    @Test
+    public void shouldRebuildConstantPartsWhenServerDetailsChange() throws Exception {
+        final Throwable t = new IllegalStateException();
+
+        assertSameAsDataBinding(new Notice(t, server, new Request()));
+        assertSameAsDataBinding(new Notice(t, Server.toServer("another environment", ServerMetadata.resolve()), new Request()));
+        assertSameAsDataBinding(new Notice(t, server, new Request()));
+    }
+
+    private void assertSameAsDataBinding(final Notice notice) throws Exception {
+        final String expected = new String(mapper.writeValueAsBytes(toBody(notice)), "UTF-8");
+        final String actual = new String(subject.serialize(notice, notifier), "UTF-8");
+
+        assertEquals(expected, actual);
+    }
+
+    // The object structure that was written with Jackson data binding before NoticeSerializer replaced it
+    private Map<String, Object> toBody(final Notice notice) {
+        final Map<String, Object> body = new HashMap<String, Object>();
+        body.put("notifier", notifier);
+        body.put("error", Error.fromException(notice.getThrowable()));
+        body.put("server", notice.getServer());
+        body.put("request", notice.getRequest());
+        return body;
+    }
+
+    private String longMessage() {
+        final StringBuilder message = new StringBuilder();
+        while (message.length() < 2000) {
+            message.append("message ");
+        }
+        return message.toString();
+    }
+}
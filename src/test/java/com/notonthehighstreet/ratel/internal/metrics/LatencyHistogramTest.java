@@ -0,0 +1,87 @@
+package com.notonthehighstreet.ratel.internal.metrics;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldReportPercentilesAsBucketUpperBounds() {
+        final LatencyHistogram subject = new LatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            subject.record(100);
+        }
+        subject.record(5000);
+        subject.record(1000000);
+
+        assertEquals(100, subject.getCount());
+        assertEquals(127, subject.getPercentileNanos(0.5));
+        assertEquals(8191, subject.getPercentileNanos(0.99));
+        assertEquals(1048575, subject.getPercentileNanos(1));
+        assertEquals((98 * 100 + 5000 + 1000000) / 100.0, subject.getMeanNanos(), 0.001);
+    }
+
+    @Test
+    public void shouldCombineDurationsRecordedByAllThreads() throws Exception {
+        final LatencyHistogram subject = new LatencyHistogram();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        subject.record(100);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        subject.record(1000000);
+
+        assertEquals(8001, subject.getCount());
+        assertEquals(127, subject.getPercentileNanos(0.5));
+        assertEquals(1048575, subject.getPercentileNanos(1));
+    }
+
+    @Test
+    public void shouldReportZeroWhenEmpty() {
+        final LatencyHistogram subject = new LatencyHistogram();
+
+        assertEquals(0, subject.getPercentileNanos(0.99));
+        assertEquals(0, subject.getMeanNanos(), 0);
+    }
+}
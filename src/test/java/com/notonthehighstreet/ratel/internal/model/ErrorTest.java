@@ -0,0 +1,117 @@
+package com.notonthehighstreet.ratel.internal.model;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class ErrorTest {
+
+    @Test
+    public void shouldFoldFramesSharedWithEnclosingException() {
+        final Throwable cause = exception("cause", "a", "b", "main");
+        final Throwable wrapper = exception("wrapper", "c", "b", "main");
+        wrapper.initCause(cause);
+
+        assertEquals(asList("c", "b", "main", "Caused by: java.lang.IllegalStateException: cause", "a", "... 2 more"), files(Error.fromException(wrapper)));
+    }
+
+    @Test
+    public void shouldCapFramesPerCauseAndInTotal() {
+        final Throwable cause = exception("cause", "d", "e", "f", "g");
+        final Throwable wrapper = exception("wrapper", "a", "b", "c");
+        wrapper.initCause(cause);
+
+        assertEquals(asList("a", "b", "... 1 more", "Caused by: java.lang.IllegalStateException: cause", "d", "... 3 more"),
+                files(Error.fromException(wrapper, new BacktraceLimits(2, 3, 32))));
+    }
+
+    @Test
+    public void shouldStopAtCircularReference() {
+        final Throwable first = exception("first", "a");
+        final Throwable second = exception("second", "b");
+        first.initCause(second);
+        second.initCause(first);
+
+        assertEquals(asList("a", "Caused by: java.lang.IllegalStateException: second", "b",
+                "[CIRCULAR REFERENCE: java.lang.IllegalStateException: first]"), files(Error.fromException(first)));
+    }
+
+    @Test
+    public void shouldIncludeSuppressedExceptionsBeforeCause() throws Exception {
+        final Throwable wrapper = exception("wrapper", "a", "main");
+        wrapper.initCause(exception("cause", "c", "main"));
+
+        // addSuppressed is only available from Java 7
+        final Method addSuppressed;
+        try {
+            addSuppressed = Throwable.class.getMethod("addSuppressed", Throwable.class);
+        } catch (final NoSuchMethodException e) {
+            return;
+        }
+        addSuppressed.invoke(wrapper, exception("suppressed", "b", "main"));
+
+        assertEquals(asList("a", "main", "Suppressed: java.lang.IllegalStateException: suppressed", "b", "... 1 more",
+                "Caused by: java.lang.IllegalStateException: cause", "c", "... 1 more"), files(Error.fromException(wrapper)));
+    }
+
+    @Test
+    public void shouldLimitChainLength() {
+        Throwable t = exception("0", "a");
+        for (int i = 1; i < 100; i++) {
+            t = new IllegalStateException(String.valueOf(i), t);
+            t.setStackTrace(new StackTraceElement[0]);
+        }
+
+        assertEquals(asList("Caused by: java.lang.IllegalStateException: 98", "Caused by: java.lang.IllegalStateException: 97",
+                "... 97 further causes omitted"), files(Error.fromException(t, new BacktraceLimits(10, 10, 3))));
+    }
+
+    private Throwable exception(final String message, final String... classes) {
+        final Throwable t = new IllegalStateException(message);
+        final StackTraceElement[] elements = new StackTraceElement[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            elements[i] = new StackTraceElement(classes[i], "method", null, 1);
+        }
+        t.setStackTrace(elements);
+        return t;
+    }
+
+    private List<String> files(final Error error) {
+        final List<String> files = new ArrayList<String>();
+        for (final Backtrace backtrace : error.getBacktrace()) {
+            files.add(backtrace.getFile());
+        }
+        return files;
+    }
+}
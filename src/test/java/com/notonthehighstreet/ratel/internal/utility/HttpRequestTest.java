@@ -26,58 +26,127 @@ package com.notonthehighstreet.ratel.internal.utility;
  * #L%
  */
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.util.Collections;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
-import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class HttpRequestTest {
 
     private HttpRequest subject;
-    private ObjectMapper mapper;
 
     @Before
     public void setUp() throws Exception {
-        mapper = mock(ObjectMapper.class);
-        subject = new HttpRequest(mapper);
+        subject = new HttpRequest();
     }
 
     @Test
-    public void callShouldMakeHTTPRequest() throws Exception {
-        final String method = "GET";
-        final String parameterName = "name";
-        final String parameterValue = "value";
-        final Object body = new Object();
-
-        final int expected = 123123;
+    public void callShouldWriteBodyBytes() throws Exception {
+        final byte[] body = "{}".getBytes("UTF-8");
+        final int expected = 202;
 
         final HttpURLConnection connection = mock(HttpURLConnection.class);
-
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 
         when(connection.getOutputStream()).thenReturn(outputStream);
         when(connection.getResponseCode()).thenReturn(expected);
 
-        final int actual = subject.call(connection, method, Collections.singletonMap(parameterName, parameterValue), body);
+        final int actual = subject.call(connection, "POST", Collections.singletonMap("name", "value"), body);
 
         assertEquals(expected, actual);
-
-        verify(mapper).writeValue(same(outputStream), same(body));
-        verify(connection).setRequestMethod(eq(method));
+        assertArrayEquals(body, outputStream.toByteArray());
+        verify(connection).setFixedLengthStreamingMode(eq(body.length));
+        verify(connection).setRequestMethod(eq("POST"));
         verify(connection).setReadTimeout(anyInt());
         verify(connection).setConnectTimeout(anyInt());
         verify(connection).setDoOutput(eq(true));
-        verify(connection).setRequestProperty(eq(parameterName), eq(parameterValue));
+        verify(connection).setRequestProperty(eq("name"), eq("value"));
+    }
+
+    @Test
+    public void callShouldCompressBodiesAboveThreshold() throws Exception {
+        subject = new HttpRequest(64);
+
+        // Random bytes do not compress, so the encoder has to grow its buffer
+        final byte[] body = new byte[64 * 1024];
+        new Random(0).nextBytes(body);
+
+        for (int i = 0; i < 2; i++) {
+            final HttpURLConnection connection = mock(HttpURLConnection.class);
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            when(connection.getOutputStream()).thenReturn(outputStream);
+
+            subject.call(connection, "POST", Collections.<String, String>emptyMap(), body);
+
+            assertArrayEquals(body, gunzip(outputStream.toByteArray()));
+            verify(connection).setRequestProperty(eq("Content-Encoding"), eq("gzip"));
+            verify(connection).setFixedLengthStreamingMode(eq(outputStream.size()));
+        }
+    }
+
+    @Test
+    public void callShouldNotKeepLargeBuffersOrNeedDeflaterAfterRelease() throws Exception {
+        subject = new HttpRequest(64);
+        final byte[] body = new byte[128 * 1024];
+        new Random(0).nextBytes(body);
+
+        final ByteArrayOutputStream first = new ByteArrayOutputStream();
+        subject.call(connectionWritingTo(first), "POST", Collections.<String, String>emptyMap(), body);
+
+        assertArrayEquals(body, gunzip(first.toByteArray()));
+        assertTrue(GzipEncoder.forCurrentThread().getBuffer().length < body.length);
+
+        GzipEncoder.releaseAll();
+
+        final ByteArrayOutputStream second = new ByteArrayOutputStream();
+        subject.call(connectionWritingTo(second), "POST", Collections.<String, String>emptyMap(), body);
+
+        assertArrayEquals(body, gunzip(second.toByteArray()));
+    }
+
+    @Test
+    public void callShouldNotCompressBodiesBelowThreshold() throws Exception {
+        subject = new HttpRequest(64);
+        final byte[] body = "{}".getBytes("UTF-8");
+
+        final HttpURLConnection connection = mock(HttpURLConnection.class);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        when(connection.getOutputStream()).thenReturn(outputStream);
+
+        subject.call(connection, "POST", Collections.<String, String>emptyMap(), body);
+
+        assertArrayEquals(body, outputStream.toByteArray());
+        verify(connection, never()).setRequestProperty(eq("Content-Encoding"), eq("gzip"));
+    }
+
+    private HttpURLConnection connectionWritingTo(final ByteArrayOutputStream outputStream) throws Exception {
+        final HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getOutputStream()).thenReturn(outputStream);
+        return connection;
+    }
+
+    private byte[] gunzip(final byte[] compressed) throws Exception {
+        final InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
     }
 }
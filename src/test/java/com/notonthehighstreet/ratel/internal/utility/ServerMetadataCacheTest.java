@@ -0,0 +1,83 @@
+package com.notonthehighstreet.ratel.internal.utility;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.notonthehighstreet.ratel.internal.model.ServerMetadata;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.UnknownHostException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ServerMetadataCacheTest {
+
+    private ServerMetadata.HostNameLookup lookup;
+    private ServerMetadataCache subject;
+
+    @Before
+    public void setUp() throws Exception {
+        lookup = mock(ServerMetadata.HostNameLookup.class);
+    }
+
+    @Test
+    public void shouldKeepResolvedHostNameWhenRefreshFails() throws Exception {
+        when(lookup.getHostName()).thenReturn("web-1").thenThrow(new UnknownHostException("lookup failed"));
+        subject = new ServerMetadataCache(lookup);
+
+        subject.refresh();
+
+        assertEquals("web-1", subject.get().getHostname());
+        assertTrue(subject.get().isResolved());
+    }
+
+    @Test
+    public void shouldPickUpChangedHostNameOnRefresh() throws Exception {
+        when(lookup.getHostName()).thenReturn("web-1").thenReturn("web-2");
+        subject = new ServerMetadataCache(lookup);
+
+        subject.refresh();
+
+        assertEquals("web-2", subject.get().getHostname());
+    }
+
+    @Test
+    public void shouldReplaceFailedLookupOnceHostNameResolves() throws Exception {
+        when(lookup.getHostName()).thenThrow(new UnknownHostException("lookup failed")).thenReturn("web-1");
+        subject = new ServerMetadataCache(lookup);
+        assertFalse(subject.get().isResolved());
+
+        subject.refresh();
+
+        assertEquals("web-1", subject.get().getHostname());
+        assertTrue(subject.get().isResolved());
+    }
+}
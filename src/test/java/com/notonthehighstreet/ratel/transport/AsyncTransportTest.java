@@ -0,0 +1,139 @@
+package com.notonthehighstreet.ratel.transport;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncTransportTest {
+
+    private final List<String> outcomes = new CopyOnWriteArrayList<String>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private URL url;
+    private AsyncTransport subject;
+
+    @Before
+    public void setUp() throws Exception {
+        url = new URL("http://localhost/");
+        // Holds up the first request until released, so the pool can be filled on purpose
+        subject = new AsyncTransport(new Transport() {
+            @Override
+            public void send(final URL url, final Map<String, String> headers, final byte[] body, final TransportCallback callback) {
+                if (body.length == 0) {
+                    throw new IllegalStateException("nothing to send");
+                }
+                started.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                callback.completed(201, null);
+            }
+        }, 1, 1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        subject.close();
+    }
+
+    @Test
+    public void shouldFailRequestsBeyondPoolAndBacklogStraightAway() throws Exception {
+        final CountDownLatch completed = new CountDownLatch(3);
+        subject.send(url, Collections.<String, String>emptyMap(), new byte[]{1}, callback("in flight", completed));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        subject.send(url, Collections.<String, String>emptyMap(), new byte[]{2}, callback("waiting", completed));
+
+        subject.send(url, Collections.<String, String>emptyMap(), new byte[]{3}, callback("rejected", completed));
+
+        assertEquals(Collections.singletonList("rejected failed"), outcomes);
+        assertEquals(2, subject.getPending());
+        release.countDown();
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals(3, outcomes.size());
+        assertTrue(outcomes.contains("in flight 201"));
+        assertTrue(outcomes.contains("waiting 201"));
+    }
+
+    @Test
+    public void shouldCompleteAcceptedRequestsAfterCloseAndFailLaterOnes() throws Exception {
+        final CountDownLatch completed = new CountDownLatch(2);
+        subject.send(url, Collections.<String, String>emptyMap(), new byte[]{1}, callback("accepted", completed));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        subject.close();
+        subject.send(url, Collections.<String, String>emptyMap(), new byte[]{2}, callback("after close", completed));
+        release.countDown();
+
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals("after close failed", outcomes.get(0));
+        assertEquals("accepted 201", outcomes.get(1));
+    }
+
+    @Test
+    public void shouldFailCallbackWhenWrappedTransportThrows() throws Exception {
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        subject.send(url, Collections.<String, String>emptyMap(), new byte[0], callback("throwing", completed));
+
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("throwing failed"), outcomes);
+    }
+
+    private TransportCallback callback(final String name, final CountDownLatch completed) {
+        return new TransportCallback() {
+            @Override
+            public void completed(final int statusCode, @Nullable final String retryAfter) {
+                outcomes.add(name + " " + statusCode);
+                completed.countDown();
+            }
+
+            @Override
+            public void failed(final IOException e) {
+                outcomes.add(name + " failed");
+                completed.countDown();
+            }
+        };
+    }
+}
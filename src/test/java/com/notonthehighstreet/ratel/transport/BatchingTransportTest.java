@@ -0,0 +1,204 @@
+package com.notonthehighstreet.ratel.transport;
+
+/*
+ * #%L
+ * Ratel Library
+ * %%
+ * Copyright (C) 2014 notonthehighstreet.com
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BatchingTransportTest {
+
+    private final List<String> bodies = new CopyOnWriteArrayList<String>();
+    private final List<String> contentTypes = new CopyOnWriteArrayList<String>();
+    private HttpServer server;
+    private URL url;
+    private BatchingTransport subject;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                contentTypes.add(exchange.getRequestHeaders().getFirst("Content-Type"));
+                bodies.add(read(exchange.getRequestBody()));
+                exchange.sendResponseHeaders(201, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        url = new URL("http://localhost:" + server.getAddress().getPort() + "/v1/notices");
+    }
+
+    @After
+    public void tearDown() {
+        subject.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldSendFullBatchAsJsonArray() throws Exception {
+        subject = new BatchingTransport(new HttpUrlConnectionTransport(), 3, 1, TimeUnit.HOURS, BatchingTransport.Format.JSON_ARRAY);
+        final Outcomes outcomes = new Outcomes(3);
+
+        for (int i = 0; i < 3; i++) {
+            subject.send(url, Collections.singletonMap("Content-Type", "application/json"), ("{\"n\":" + i + "}").getBytes("UTF-8"), outcomes);
+        }
+
+        assertTrue(outcomes.await());
+        assertEquals(3, outcomes.created.get());
+        assertEquals(Collections.singletonList("[{\"n\":0},{\"n\":1},{\"n\":2}]"), bodies);
+        assertEquals(Collections.singletonList("application/json"), contentTypes);
+    }
+
+    @Test
+    public void shouldSendPartialBatchAsNdjsonAfterLinger() throws Exception {
+        subject = new BatchingTransport(new HttpUrlConnectionTransport(), 100, 50, TimeUnit.MILLISECONDS, BatchingTransport.Format.NDJSON);
+        final Outcomes outcomes = new Outcomes(2);
+
+        subject.send(url, Collections.<String, String>emptyMap(), "{\"n\":0}".getBytes("UTF-8"), outcomes);
+        subject.send(url, Collections.<String, String>emptyMap(), "{\"n\":1}".getBytes("UTF-8"), outcomes);
+
+        assertTrue(outcomes.await());
+        assertEquals(2, outcomes.created.get());
+        assertEquals(Collections.singletonList("{\"n\":0}\n{\"n\":1}\n"), bodies);
+        assertEquals(Collections.singletonList("application/x-ndjson"), contentTypes);
+        assertEquals(0, subject.getPending());
+    }
+
+    @Test
+    public void shouldNotLetLingerTimerOfFullBatchSendNextBatch() throws Exception {
+        final InMemoryTransport delegate = new InMemoryTransport();
+        final ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        final ScheduledFuture<?> future = mock(ScheduledFuture.class);
+        doReturn(future).when(scheduler).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        subject = new BatchingTransport(delegate, 2, 1, TimeUnit.MINUTES, BatchingTransport.Format.NDJSON, scheduler);
+        final Outcomes outcomes = new Outcomes(3);
+
+        for (int i = 0; i < 3; i++) {
+            subject.send(url, Collections.<String, String>emptyMap(), ("{\"n\":" + i + "}").getBytes("UTF-8"), outcomes);
+        }
+
+        final ArgumentCaptor<Runnable> lingerExpired = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, times(2)).schedule(lingerExpired.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        verify(future).cancel(false);
+
+        // The first batch's timer fires after the batch was taken because it was full
+        lingerExpired.getAllValues().get(0).run();
+        assertEquals(1, delegate.getDeliveries().size());
+        assertEquals(1, subject.getPending());
+
+        lingerExpired.getAllValues().get(1).run();
+        assertEquals(2, delegate.getDeliveries().size());
+        assertEquals(0, subject.getPending());
+    }
+
+    @Test
+    public void shouldFailEveryNoticeInBatchWhenDelegateThrows() throws Exception {
+        subject = new BatchingTransport(new Transport() {
+            @Override
+            public void send(final URL url, final Map<String, String> headers, final byte[] body, final TransportCallback callback) {
+                throw new IllegalStateException("broken transport");
+            }
+        }, 2, 1, TimeUnit.HOURS, BatchingTransport.Format.NDJSON);
+        final Outcomes outcomes = new Outcomes(2);
+
+        subject.send(url, Collections.<String, String>emptyMap(), "{\"n\":0}".getBytes("UTF-8"), outcomes);
+        subject.send(url, Collections.<String, String>emptyMap(), "{\"n\":1}".getBytes("UTF-8"), outcomes);
+
+        assertTrue(outcomes.await());
+        assertEquals(2, outcomes.failed.get());
+    }
+
+    private static String read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private static final class Outcomes implements TransportCallback {
+
+        private final CountDownLatch latch;
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private Outcomes(final int expected) {
+            this.latch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void completed(final int statusCode, final String retryAfter) {
+            if (statusCode == 201) {
+                created.incrementAndGet();
+            }
+            latch.countDown();
+        }
+
+        @Override
+        public void failed(final IOException e) {
+            failed.incrementAndGet();
+            latch.countDown();
+        }
+
+        private boolean await() throws InterruptedException {
+            return latch.await(5, TimeUnit.SECONDS);
+        }
+    }
+}